@@ -0,0 +1,49 @@
+package frckit.physics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Benchmarks for the forward and inverse dynamics of a single DC motor model.
+ */
+@State(Scope.Thread)
+public class DCMotorDynamicsBenchmark {
+    private static final int SAMPLES = 1024;
+
+    private final DCMotorDynamics motor = new DCMotorDynamics(4.4, 3.47, 0.2);
+    private final double[] speeds = new double[SAMPLES];
+    private final double[] voltages = new double[SAMPLES];
+    private final double[] torques = new double[SAMPLES];
+    private int index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        for (int i = 0; i < SAMPLES; i++) {
+            speeds[i] = random.nextDouble() * 100.0 - 50.0;
+            voltages[i] = random.nextDouble() * 24.0 - 12.0;
+            torques[i] = random.nextDouble() * 40.0 - 20.0;
+        }
+    }
+
+    private int nextIndex() {
+        index = (index + 1) & (SAMPLES - 1);
+        return index;
+    }
+
+    @Benchmark
+    public double forwardDynamics() {
+        int i = nextIndex();
+        return motor.forwardDynamics(speeds[i], voltages[i]);
+    }
+
+    @Benchmark
+    public double inverseDynamics() {
+        int i = nextIndex();
+        return motor.inverseDynamics(speeds[i], torques[i]);
+    }
+}
@@ -0,0 +1,65 @@
+package frckit.physics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Benchmarks for the dynamics of a robot's worth of transmissions (14), computed one object at a time and with a
+ * MotorBank.  Each operation computes every transmission once.
+ */
+@State(Scope.Thread)
+public class MotorBankBenchmark {
+    private static final int MOTORS = 14;
+
+    private final DCMotorDynamics[] motors = new DCMotorDynamics[MOTORS];
+    private MotorBank bank;
+    private final double[] speeds = new double[MOTORS];
+    private final double[] voltages = new double[MOTORS];
+    private final double[] torques = new double[MOTORS];
+    private final double[] out = new double[MOTORS];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        for (int i = 0; i < MOTORS; i++) {
+            motors[i] = new DCMotorDynamics(random.nextDouble() * 4.0 + 1.0, random.nextDouble() * 4.0 + 1.0,
+                    random.nextDouble() * 0.4);
+            speeds[i] = random.nextDouble() * 100.0 - 50.0;
+            voltages[i] = random.nextDouble() * 24.0 - 12.0;
+            torques[i] = random.nextDouble() * 40.0 - 20.0;
+        }
+        bank = new MotorBank(motors);
+    }
+
+    @Benchmark
+    public double[] forwardDynamicsObjects() {
+        for (int i = 0; i < MOTORS; i++) {
+            out[i] = motors[i].forwardDynamics(speeds[i], voltages[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] forwardDynamicsBank() {
+        bank.forwardDynamics(speeds, voltages, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] inverseDynamicsObjects() {
+        for (int i = 0; i < MOTORS; i++) {
+            out[i] = motors[i].inverseDynamics(speeds[i], torques[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] inverseDynamicsBank() {
+        bank.inverseDynamics(speeds, torques, out);
+        return out;
+    }
+}
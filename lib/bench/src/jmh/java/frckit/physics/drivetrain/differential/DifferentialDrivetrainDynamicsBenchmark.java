@@ -0,0 +1,42 @@
+package frckit.physics.drivetrain.differential;
+
+import frckit.physics.state.RigidBodyState2d;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Benchmarks for the inverse dynamics of a differential drivetrain model.
+ */
+@State(Scope.Thread)
+public class DifferentialDrivetrainDynamicsBenchmark {
+    private static final int SAMPLES = 1024;
+
+    private final DifferentialDrivetrainDynamics dynamics = DifferentialDrivetrainDynamics.fromHybridCharacterization(
+            60.0, 6.0, 0.0, 0.0762, 0.35,
+            0.2, 0.23, 3.47,
+            0.2, 0.23, 3.47
+    );
+    private final RigidBodyState2d[] states = new RigidBodyState2d[SAMPLES];
+    private int index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        for (int i = 0; i < SAMPLES; i++) {
+            states[i] = new RigidBodyState2d(
+                    random.nextDouble() * 8.0 - 4.0, 0.0, random.nextDouble() * 8.0 - 4.0,
+                    random.nextDouble() * 6.0 - 3.0, 0.0, random.nextDouble() * 6.0 - 3.0
+            );
+        }
+    }
+
+    @Benchmark
+    public DifferentialWheelState inverseDynamics() {
+        index = (index + 1) & (SAMPLES - 1);
+        return dynamics.inverseDynamics(states[index]);
+    }
+}
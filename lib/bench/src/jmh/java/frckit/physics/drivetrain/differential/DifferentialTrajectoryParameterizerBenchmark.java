@@ -0,0 +1,43 @@
+package frckit.physics.drivetrain.differential;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.spline.PoseWithCurvature;
+import edu.wpi.first.math.spline.SplineHelper;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Benchmarks for time parameterizing a path of about 5 meters with the drivetrain's dynamics.  The path points are
+ * sampled from the splines by WPILib's generator, the same input its own parameterizer would be given.
+ */
+@State(Scope.Thread)
+public class DifferentialTrajectoryParameterizerBenchmark {
+    private final DifferentialDrivetrainDynamics dynamics = DifferentialDrivetrainDynamics.fromHybridCharacterization(
+            60.0, 6.0, 0.0, 0.0762, 0.35,
+            0.2, 0.23, 3.47,
+            0.2, 0.23, 3.47
+    );
+    private final DifferentialTrajectoryParameterizer parameterizer = new DifferentialTrajectoryParameterizer(dynamics, 10.0);
+    private List<PoseWithCurvature> points;
+
+    @Setup
+    public void setup() {
+        points = TrajectoryGenerator.splinePointsFromSplines(SplineHelper.getQuinticSplinesFromWaypoints(List.of(
+                new Pose2d(),
+                new Pose2d(2.0, 1.0, new Rotation2d(0.5)),
+                new Pose2d(4.5, 1.5, new Rotation2d())
+        )));
+    }
+
+    @Benchmark
+    public Trajectory parameterize() {
+        return parameterizer.parameterize(points);
+    }
+}
@@ -0,0 +1,122 @@
+package frckit.physics.drivetrain.follower;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import frckit.physics.drivetrain.differential.DifferentialDrivetrainDynamics;
+import frckit.physics.drivetrain.differential.MutableDifferentialWheelState;
+import frckit.physics.state.MutableRigidBodyState2d;
+import frckit.physics.state.RigidBodyState2d;
+import frckit.util.MutablePose2d;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Benchmarks for the trajectory feedback, trajectory sampling, and follower update.  The follower is stepped through a
+ * trajectory at 50Hz, and is recreated each time it finishes (once every few hundred operations).  The sampling
+ * benchmarks step through the trajectory at the same rate, wrapping around at the end.
+ *
+ * The control pipeline benchmark runs the full trajectory -> feedback -> wheel voltage path through the caller owned
+ * state holders, resetting its follower rather than recreating it, so the gc profiler's gc.alloc.rate.norm for it
+ * should be zero.
+ */
+@State(Scope.Thread)
+public class FollowerBenchmark {
+    private static final double PERIOD = 0.02;
+
+    private final NonholonomicNonlinearFeedback feedback = new NonholonomicNonlinearFeedback();
+    private final Pose2d error = new Pose2d(0.05, -0.03, new Rotation2d(0.02));
+    private final RigidBodyState2d targetState = new RigidBodyState2d(2.0, 0.0, 0.5, 0.0, 0.0, 0.0);
+    private final RigidBodyState2d lastState = new RigidBodyState2d(1.98, 0.0, 0.49, 0.0, 0.0, 0.0);
+
+    private Trajectory trajectory;
+    private DrivetrainTrajectoryFollower follower;
+    private TrajectorySampler sampler;
+    private double timestamp;
+    private double sampleTime;
+    private final Pose2d currentPose = new Pose2d(0.01, 0.01, new Rotation2d(0.01));
+
+    private final DifferentialDrivetrainDynamics dynamics = DifferentialDrivetrainDynamics.fromHybridCharacterization(
+            60.0, 6.0, 0.0, 0.0762, 0.35,
+            0.2, 0.23, 3.47,
+            0.2, 0.23, 3.47
+    );
+    private final MutablePose2d mutableError = new MutablePose2d(0.05, -0.03, 0.02);
+    private final MutableRigidBodyState2d mutableTargetState = new MutableRigidBodyState2d().set(targetState);
+    private final MutableRigidBodyState2d mutableLastState = new MutableRigidBodyState2d().set(lastState);
+    private final MutableRigidBodyState2d feedbackOut = new MutableRigidBodyState2d();
+    private final MutablePose2d mutableCurrentPose = new MutablePose2d(0.01, 0.01, 0.01);
+    private final MutableRigidBodyState2d pipelineTarget = new MutableRigidBodyState2d();
+    private final MutableDifferentialWheelState pipelineCommand = new MutableDifferentialWheelState();
+    private DrivetrainTrajectoryFollower pipelineFollower;
+    private double pipelineTimestamp;
+
+    @Setup
+    public void setup() {
+        trajectory = TrajectoryGenerator.generateTrajectory(
+                List.of(
+                        new Pose2d(),
+                        new Pose2d(3.0, 1.0, new Rotation2d(0.5)),
+                        new Pose2d(6.0, 0.0, new Rotation2d())
+                ),
+                new TrajectoryConfig(3.0, 2.0)
+        );
+        follower = new DrivetrainTrajectoryFollower(trajectory, feedback);
+        sampler = new TrajectorySampler(trajectory);
+        pipelineFollower = new DrivetrainTrajectoryFollower(trajectory, feedback);
+    }
+
+    @Benchmark
+    public RigidBodyState2d feedbackCalculate() {
+        return feedback.calculate(PERIOD, error, targetState, lastState);
+    }
+
+    @Benchmark
+    public MutableRigidBodyState2d feedbackCalculateMutable() {
+        return feedback.calculate(PERIOD, mutableError, mutableTargetState, mutableLastState, feedbackOut);
+    }
+
+    @Benchmark
+    public RigidBodyState2d followerUpdate() {
+        if (follower.isDone()) {
+            follower = new DrivetrainTrajectoryFollower(trajectory, feedback);
+        }
+        timestamp += PERIOD;
+        return follower.update(timestamp, currentPose);
+    }
+
+    @Benchmark
+    public double controlPipeline() {
+        if (pipelineFollower.isDone()) {
+            pipelineFollower.reset();
+        }
+        pipelineTimestamp += PERIOD;
+        pipelineFollower.update(pipelineTimestamp, mutableCurrentPose, pipelineTarget);
+        dynamics.inverseDynamics(pipelineTarget, pipelineCommand);
+        return pipelineCommand.getLeftVoltage() + pipelineCommand.getRightVoltage();
+    }
+
+    @Benchmark
+    public Trajectory.State trajectorySample() {
+        return trajectory.sample(nextSampleTime());
+    }
+
+    @Benchmark
+    public double samplerSample() {
+        return sampler.sample(nextSampleTime()).getX();
+    }
+
+    private double nextSampleTime() {
+        sampleTime += PERIOD;
+        if (sampleTime > trajectory.getTotalTimeSeconds()) {
+            sampleTime = 0.0;
+        }
+        return sampleTime;
+    }
+}
@@ -0,0 +1,68 @@
+package frckit.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Benchmarks for ConcurrentPoseHistory, both uncontended and with one odometry writer thread racing three reader threads.
+ */
+@State(Scope.Group)
+public class ConcurrentPoseHistoryBenchmark {
+    private static final int CAPACITY = 500;
+    private static final double PERIOD = 0.004;
+    private static final double LOOKBACK = 0.2; //Typical vision latency
+
+    private ConcurrentPoseHistory history;
+    private double nextTimestamp;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        history = new ConcurrentPoseHistory(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            history.insert(nextTimestamp, random.nextDouble(), random.nextDouble(), random.nextDouble());
+            nextTimestamp += PERIOD;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ReaderState {
+        private final MutablePose2d out = new MutablePose2d();
+        private final Random random = new Random(1);
+    }
+
+    @Benchmark
+    @Group("uncontendedInsert")
+    public ConcurrentPoseHistory insert() {
+        history.insert(nextTimestamp, 1.0, 2.0, 0.5);
+        nextTimestamp += PERIOD;
+        return history;
+    }
+
+    @Benchmark
+    @Group("uncontendedGet")
+    public MutablePose2d get(ReaderState reader) {
+        history.get(history.getLatestTimestamp() - reader.random.nextDouble() * LOOKBACK, reader.out);
+        return reader.out;
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public ConcurrentPoseHistory contendedInsert() {
+        return insert();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public MutablePose2d contendedGet(ReaderState reader) {
+        return get(reader);
+    }
+}
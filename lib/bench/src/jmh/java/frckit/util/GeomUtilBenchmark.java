@@ -0,0 +1,37 @@
+package frckit.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for the pose interpolation in GeomUtil, comparing the Pose2d and primitive versions.
+ */
+@State(Scope.Thread)
+public class GeomUtilBenchmark {
+    private final Pose2d lhs = new Pose2d(1.0, 2.0, new Rotation2d(0.3));
+    private final Pose2d rhs = new Pose2d(1.5, 2.2, new Rotation2d(0.6));
+    private final MutablePose2d out = new MutablePose2d();
+    private double t = 0.0;
+
+    private double nextT() {
+        t += 0.01;
+        if (t >= 1.0) {
+            t = 0.01;
+        }
+        return t;
+    }
+
+    @Benchmark
+    public Pose2d interpolate() {
+        return GeomUtil.interpolate(lhs, rhs, nextT());
+    }
+
+    @Benchmark
+    public MutablePose2d interpolatePrimitive() {
+        GeomUtil.interpolate(1.0, 2.0, 0.3, 1.5, 2.2, 0.6, nextT(), out);
+        return out;
+    }
+}
@@ -0,0 +1,95 @@
+package frckit.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Benchmarks for inserting into and querying a PoseHistory sized for 2 seconds of 250Hz odometry.
+ */
+@State(Scope.Thread)
+public class PoseHistoryBenchmark {
+    private static final int CAPACITY = 500;
+    private static final double PERIOD = 0.004;
+    private static final int QUERY_COUNT = 64;
+
+    private PoseHistory history;
+    private Pose2d pose;
+    private double nextTimestamp;
+
+    private double[] queries;
+    private double[] sortedQueries;
+    private int queryIndex;
+
+    private final MutablePose2d out = new MutablePose2d();
+    private final double[] xs = new double[QUERY_COUNT];
+    private final double[] ys = new double[QUERY_COUNT];
+    private final double[] thetas = new double[QUERY_COUNT];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        history = new PoseHistory(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            history.insert(nextTimestamp, random.nextDouble(), random.nextDouble(), random.nextDouble() * 2.0 * Math.PI - Math.PI);
+            nextTimestamp += PERIOD;
+        }
+        pose = new Pose2d(1.0, 2.0, new Rotation2d(0.5));
+
+        queries = new double[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            queries[i] = random.nextDouble() * (CAPACITY - 1) * PERIOD;
+        }
+        sortedQueries = queries.clone();
+        Arrays.sort(sortedQueries);
+    }
+
+    private double nextQuery() {
+        queryIndex = (queryIndex + 1) % QUERY_COUNT;
+        return queries[queryIndex];
+    }
+
+    @Benchmark
+    public PoseHistory insert() {
+        history.insert(nextTimestamp, pose);
+        nextTimestamp += PERIOD;
+        return history;
+    }
+
+    @Benchmark
+    public PoseHistory insertPrimitive() {
+        history.insert(nextTimestamp, 1.0, 2.0, 0.5);
+        nextTimestamp += PERIOD;
+        return history;
+    }
+
+    @Benchmark
+    public Optional<Pose2d> get() {
+        return history.get(nextQuery());
+    }
+
+    @Benchmark
+    public MutablePose2d getMutable() {
+        history.get(nextQuery(), out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] getBatchSorted() {
+        history.get(sortedQueries, xs, ys, thetas);
+        return xs;
+    }
+
+    @Benchmark
+    public double[] getBatchUnsorted() {
+        history.get(queries, xs, ys, thetas);
+        return xs;
+    }
+}
@@ -0,0 +1,228 @@
+package frckit.physics;
+
+/**
+ * Online characterization of a DC transmission.  Samples of (voltage, speed, acceleration) are consumed one at a time,
+ * and the characterization constants of the model
+ * <pre>
+ *      voltage = Ks * sign(speed) + Kv * speed + Ka * acceleration
+ * </pre>
+ * are estimated with recursive least squares.  Memory use is constant (the estimate and its 3x3 covariance), so this
+ * can run on the robot during practice without storing logs.
+ *
+ * A forgetting factor below 1 weights recent samples more heavily, so the estimate follows slow changes in the
+ * transmission (such as wear).  Samples near zero speed are ignored, as static friction is not part of the model.
+ * When the samples carry no new information (for example, while driving at a constant speed) the covariance would grow
+ * without bound under forgetting, so forgetting is paused while the covariance is above its initial size.
+ *
+ * Speeds and accelerations are of the transmission output, in rad/s and rad/s^2, as used by DCMotorDynamics.  This is
+ * not thread safe.
+ */
+public class DCMotorCharacterizer {
+    private final double forgettingFactor;
+    private final double minSpeed;
+    private final double initialCovariance;
+
+    //Estimate of [Ks, Kv, Ka]
+    private double ks;
+    private double kv;
+    private double ka;
+
+    //Upper triangle of the symmetric covariance matrix
+    private double p00, p01, p02, p11, p12, p22;
+
+    private long sampleCount;
+
+    /**
+     * Creates a new DCMotorCharacterizer with default settings.
+     * @param forgettingFactor The weight of each older sample relative to the next, in (0, 1].  1 weights every sample
+     *                         equally, and values such as 0.999 follow changes over roughly 1 / (1 - factor) samples.
+     */
+    public DCMotorCharacterizer(double forgettingFactor) {
+        this(forgettingFactor, 0.1, 1e3);
+    }
+
+    /**
+     * Creates a new DCMotorCharacterizer.
+     * @param forgettingFactor The weight of each older sample relative to the next, in (0, 1]
+     * @param minSpeed Samples with a speed magnitude below this are ignored, in rad/s.  If this is 0, samples at exactly
+     *                 zero speed are used, but since sign(speed) is 0 they only inform Kv and Ka, never Ks.
+     * @param initialCovariance The initial variance of each constant.  Larger values make early samples count for more.
+     */
+    public DCMotorCharacterizer(double forgettingFactor, double minSpeed, double initialCovariance) {
+        if (!(forgettingFactor > 0.0 && forgettingFactor <= 1.0)) {
+            throw new IllegalArgumentException("Forgetting factor must be in (0, 1], got " + forgettingFactor);
+        }
+        if (minSpeed < 0.0) {
+            throw new IllegalArgumentException("Minimum speed must not be negative, got " + minSpeed);
+        }
+        if (!(initialCovariance > 0.0)) {
+            throw new IllegalArgumentException("Initial covariance must be positive, got " + initialCovariance);
+        }
+        this.forgettingFactor = forgettingFactor;
+        this.minSpeed = minSpeed;
+        this.initialCovariance = initialCovariance;
+        reset();
+    }
+
+    /**
+     * Discards the estimate and every sample.
+     */
+    public void reset() {
+        ks = 0.0;
+        kv = 0.0;
+        ka = 0.0;
+        p00 = initialCovariance;
+        p11 = initialCovariance;
+        p22 = initialCovariance;
+        p01 = 0.0;
+        p02 = 0.0;
+        p12 = 0.0;
+        sampleCount = 0;
+    }
+
+    /**
+     * Updates the estimate with a sample.  This does not allocate.
+     * @param voltage The voltage applied to the transmission
+     * @param speed The speed of the transmission output, in rad/s
+     * @param acceleration The acceleration of the transmission output, in rad/s^2
+     * @return True if the sample was used, or false if it was ignored (because the speed was too low, or a value was
+     *         not finite)
+     */
+    public boolean addSample(double voltage, double speed, double acceleration) {
+        if (Math.abs(speed) < minSpeed || !Double.isFinite(voltage) || !Double.isFinite(speed) || !Double.isFinite(acceleration)) {
+            return false;
+        }
+        double x0 = Math.signum(speed);
+        double x1 = speed;
+        double x2 = acceleration;
+
+        //u = P * x
+        double u0 = p00 * x0 + p01 * x1 + p02 * x2;
+        double u1 = p01 * x0 + p11 * x1 + p12 * x2;
+        double u2 = p02 * x0 + p12 * x1 + p22 * x2;
+        double denominator = forgettingFactor + x0 * u0 + x1 * u1 + x2 * u2;
+
+        //Correct the estimate by the prediction error, weighted by the gain u / denominator
+        double error = voltage - (ks * x0 + kv * x1 + ka * x2);
+        ks += u0 / denominator * error;
+        kv += u1 / denominator * error;
+        ka += u2 / denominator * error;
+
+        //P = (P - u * u^T / denominator) / lambda, skipping the division while the covariance is large
+        p00 -= u0 * u0 / denominator;
+        p01 -= u0 * u1 / denominator;
+        p02 -= u0 * u2 / denominator;
+        p11 -= u1 * u1 / denominator;
+        p12 -= u1 * u2 / denominator;
+        p22 -= u2 * u2 / denominator;
+        if (p00 + p11 + p22 < 3.0 * initialCovariance) {
+            double scale = 1.0 / forgettingFactor;
+            p00 *= scale;
+            p01 *= scale;
+            p02 *= scale;
+            p11 *= scale;
+            p12 *= scale;
+            p22 *= scale;
+        }
+
+        sampleCount++;
+        return true;
+    }
+
+    /**
+     * @return The number of samples which have been used
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return The estimated friction voltage, in V
+     */
+    public double getKs() {
+        return ks;
+    }
+
+    /**
+     * @return The estimated voltage per speed, in V / rad/s
+     */
+    public double getKv() {
+        return kv;
+    }
+
+    /**
+     * @return The estimated voltage per acceleration, in V / rad/s^2
+     */
+    public double getKa() {
+        return ka;
+    }
+
+    /**
+     * @return The estimated variance of Ks, which shrinks as samples which excite it are added
+     */
+    public double getKsVariance() {
+        return p00;
+    }
+
+    /**
+     * @return The estimated variance of Kv
+     */
+    public double getKvVariance() {
+        return p11;
+    }
+
+    /**
+     * @return The estimated variance of Ka
+     */
+    public double getKaVariance() {
+        return p22;
+    }
+
+    /**
+     * Predicts the voltage needed with the current estimate.
+     * @param speed The speed of the transmission output, in rad/s
+     * @param acceleration The acceleration of the transmission output, in rad/s^2
+     * @return The predicted voltage
+     */
+    public double predictVoltage(double speed, double acceleration) {
+        return ks * Math.signum(speed) + kv * speed + ka * acceleration;
+    }
+
+    /**
+     * Creates a transmission model from the current estimate, using the estimated Ka.
+     * @param inertia The moment of inertia driven by the transmission, in kg*m^2, which converts Ka into a torque per
+     *                volt
+     * @return The transmission model
+     * @throws IllegalStateException If no samples have been used, or the estimated Kv or Ka is not positive
+     */
+    public DCMotorDynamics toDynamics(double inertia) {
+        checkEstimate();
+        if (!(ka > 0.0)) {
+            throw new IllegalStateException("Estimated Ka must be positive to create a model, got " + ka);
+        }
+        //Torque is inertia * acceleration, and Ka is voltage per acceleration
+        return new DCMotorDynamics(1.0 / kv, inertia / ka, ks);
+    }
+
+    /**
+     * Creates a transmission model from the current estimate, ignoring the estimated Ka in favor of a known torque per
+     * volt.  This is usually more accurate, for the same reasons as described in
+     * {@link frckit.physics.drivetrain.differential.DifferentialDrivetrainDynamics#fromHybridCharacterization}.
+     * @param torquePerVolt The torque per volt of the transmission, in N*m / V
+     * @return The transmission model
+     * @throws IllegalStateException If no samples have been used, or the estimated Kv is not positive
+     */
+    public DCMotorDynamics toHybridDynamics(double torquePerVolt) {
+        checkEstimate();
+        return new DCMotorDynamics(1.0 / kv, torquePerVolt, ks);
+    }
+
+    private void checkEstimate() {
+        if (sampleCount == 0) {
+            throw new IllegalStateException("No samples have been used, so there is no estimate to create a model from");
+        }
+        if (!(kv > 0.0)) {
+            throw new IllegalStateException("Estimated Kv must be positive to create a model, got " + kv);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package frckit.physics;
+
+import java.util.Arrays;
+
+/**
+ * A set of DC transmission models, stored as contiguous primitive arrays so that the dynamics of every transmission
+ * can be computed in a single loop.  This produces exactly the same results as calling the methods of each
+ * DCMotorDynamics in turn (including the exact zero output when a transmission is idle), but without the object
+ * indirection, and with the branches of the per-object methods reduced to selects, which gives the JIT a simple,
+ * call free loop body to optimize.
+ *
+ * Transmissions are added once (typically at robot startup) and are then referred to by index.  This is not thread
+ * safe.
+ */
+public class MotorBank {
+    private static final double THRESHOLD = 1e-12; //Same threshold as DCMotorDynamics
+
+    private double[] speedPerVolt = new double[0];
+    private double[] torquePerVolt = new double[0];
+    private double[] frictionVoltage = new double[0];
+    private int size;
+
+    /**
+     * Creates a new MotorBank containing the given transmissions, in order
+     * @param motors The transmissions to add
+     */
+    public MotorBank(DCMotorDynamics... motors) {
+        for (DCMotorDynamics motor : motors) {
+            add(motor);
+        }
+    }
+
+    /**
+     * Adds a transmission to the bank.
+     * @param motor The transmission model
+     * @return The index of the transmission, which is used to find its inputs and outputs in the batch methods
+     */
+    public int add(DCMotorDynamics motor) {
+        if (size == speedPerVolt.length) {
+            int capacity = Math.max(4, size * 2);
+            speedPerVolt = Arrays.copyOf(speedPerVolt, capacity);
+            torquePerVolt = Arrays.copyOf(torquePerVolt, capacity);
+            frictionVoltage = Arrays.copyOf(frictionVoltage, capacity);
+        }
+        int index = size++;
+        set(index, motor);
+        return index;
+    }
+
+    /**
+     * Replaces the model of a transmission, for example with an updated characterization
+     * @param index The index of the transmission
+     * @param motor The new transmission model
+     */
+    public void set(int index, DCMotorDynamics motor) {
+        checkIndex(index);
+        speedPerVolt[index] = motor.getSpeedPerVolt();
+        torquePerVolt[index] = motor.getTorquePerVolt();
+        frictionVoltage[index] = motor.getFrictionVoltage();
+    }
+
+    /**
+     * @return The number of transmissions in the bank
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index The index of the transmission
+     * @return The speed per volt constant of the transmission in rad/s / V
+     */
+    public double getSpeedPerVolt(int index) {
+        checkIndex(index);
+        return speedPerVolt[index];
+    }
+
+    /**
+     * @param index The index of the transmission
+     * @return The torque per volt of the transmission in N*m / V
+     */
+    public double getTorquePerVolt(int index) {
+        checkIndex(index);
+        return torquePerVolt[index];
+    }
+
+    /**
+     * @param index The index of the transmission
+     * @return The friction voltage of the transmission in V
+     */
+    public double getFrictionVoltage(int index) {
+        checkIndex(index);
+        return frictionVoltage[index];
+    }
+
+    /**
+     * Performs forward dynamics for every transmission, with the same result as
+     * {@link DCMotorDynamics#forwardDynamics(double, double)}.  This does not allocate.
+     * @param speeds The rotational speed of each transmission, by index
+     * @param voltages The voltage applied to each transmission, by index
+     * @param torquesOut The array to write the torque produced by each transmission into, by index.  This may be the
+     *                   same array as either input.
+     */
+    public void forwardDynamics(double[] speeds, double[] voltages, double[] torquesOut) {
+        checkLength(speeds, "speeds");
+        checkLength(voltages, "voltages");
+        checkLength(torquesOut, "torquesOut");
+        double[] speedPerVolt = this.speedPerVolt;
+        double[] torquePerVolt = this.torquePerVolt;
+        double[] frictionVoltage = this.frictionVoltage;
+        for (int i = 0; i < size; i++) {
+            double speed = speeds[i];
+            double voltage = voltages[i];
+            double friction = frictionVoltage[i];
+
+            boolean moving = speed > THRESHOLD || speed < -THRESHOLD;
+            boolean idle = !moving && !(voltage > THRESHOLD) && !(voltage < -THRESHOLD);
+            //Rolling friction opposes the motion, or static friction absorbs up to the friction voltage
+            double rollingVoltage = speed > 0.0 ? voltage - friction : voltage + friction;
+            double staticVoltage = voltage > 0.0 ? Math.max(0.0, voltage - friction) : Math.min(0.0, voltage + friction);
+            double effectiveVoltage = moving ? rollingVoltage : staticVoltage;
+
+            double torque = torquePerVolt[i] * (-speed / speedPerVolt[i] + effectiveVoltage);
+            torquesOut[i] = idle ? 0.0 : torque;
+        }
+    }
+
+    /**
+     * Performs inverse dynamics for every transmission, with the same result as
+     * {@link DCMotorDynamics#inverseDynamics(double, double)}.  This does not allocate.
+     * @param speeds The rotational speed of each transmission, by index
+     * @param torques The desired torque of each transmission, by index
+     * @param voltagesOut The array to write the voltage required by each transmission into, by index.  This may be the
+     *                    same array as either input.
+     */
+    public void inverseDynamics(double[] speeds, double[] torques, double[] voltagesOut) {
+        checkLength(speeds, "speeds");
+        checkLength(torques, "torques");
+        checkLength(voltagesOut, "voltagesOut");
+        double[] speedPerVolt = this.speedPerVolt;
+        double[] torquePerVolt = this.torquePerVolt;
+        double[] frictionVoltage = this.frictionVoltage;
+        for (int i = 0; i < size; i++) {
+            double speed = speeds[i];
+            double torque = torques[i];
+            double friction = frictionVoltage[i];
+
+            boolean moving = speed > THRESHOLD || speed < -THRESHOLD;
+            boolean idle = !moving && !(torque > THRESHOLD) && !(torque < -THRESHOLD);
+            //Friction acts against the motion, or against the torque when static
+            double direction = moving ? speed : torque;
+            double effectiveFrictionVoltage = direction > 0.0 ? friction : -friction;
+
+            double voltage = torque / torquePerVolt[i] + speed / speedPerVolt[i] + effectiveFrictionVoltage;
+            voltagesOut[i] = idle ? 0.0 : voltage;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Transmission index " + index + " out of range for bank of size " + size);
+        }
+    }
+
+    private void checkLength(double[] array, String name) {
+        if (array.length < size) {
+            throw new IllegalArgumentException("Array " + name + " has length " + array.length + ", but the bank has "
+                    + size + " transmissions");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package frckit.physics.drivetrain.analysis;
+
+import java.util.Arrays;
+
+/**
+ * The distribution of a value over a set of simulated runs.
+ */
+public class Distribution {
+    private final double[] values;
+    private final double[] sorted;
+    private final double mean;
+    private final double standardDeviation;
+
+    /**
+     * Creates a new Distribution
+     * @param values The value from each run, in run order.  The array is not copied, and must not be modified.
+     */
+    public Distribution(double[] values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("A distribution needs at least one value");
+        }
+        this.values = values;
+        this.sorted = values.clone();
+        Arrays.sort(sorted);
+
+        double sum = 0.0;
+        for (double value : values) {
+            sum += value;
+        }
+        mean = sum / values.length;
+        double sumSquares = 0.0;
+        for (double value : values) {
+            sumSquares += (value - mean) * (value - mean);
+        }
+        standardDeviation = Math.sqrt(sumSquares / values.length);
+    }
+
+    /**
+     * @return The number of values
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param run The index of the run
+     * @return The value from the given run
+     */
+    public double get(int run) {
+        return values[run];
+    }
+
+    /**
+     * @return The mean of the values
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return The population standard deviation of the values
+     */
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    /**
+     * @return The smallest value
+     */
+    public double getMin() {
+        return sorted[0];
+    }
+
+    /**
+     * @return The largest value
+     */
+    public double getMax() {
+        return sorted[sorted.length - 1];
+    }
+
+    /**
+     * Computes a percentile, linearly interpolating between the two nearest values
+     * @param percentile The percentile, between 0 and 100
+     * @return The value at the percentile
+     */
+    public double getPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100, got " + percentile);
+        }
+        double position = percentile / 100.0 * (sorted.length - 1);
+        int lower = (int) position;
+        int upper = Math.min(lower + 1, sorted.length - 1);
+        return sorted[lower] + (sorted[upper] - sorted[lower]) * (position - lower);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("mean=%.4f sd=%.4f min=%.4f p50=%.4f p95=%.4f p99=%.4f max=%.4f",
+                mean, standardDeviation, getMin(), getPercentile(50.0), getPercentile(95.0), getPercentile(99.0),
+                getMax());
+    }
+}
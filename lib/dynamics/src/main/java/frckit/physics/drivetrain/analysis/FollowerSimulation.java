@@ -0,0 +1,185 @@
+package frckit.physics.drivetrain.analysis;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import frckit.physics.drivetrain.differential.DifferentialDrivetrainDynamics;
+import frckit.physics.drivetrain.differential.DifferentialDrivetrainIntegrator;
+import frckit.physics.drivetrain.differential.MutableDifferentialWheelState;
+import frckit.physics.drivetrain.follower.DrivetrainFeedback;
+import frckit.physics.drivetrain.follower.DrivetrainTrajectoryFollower;
+import frckit.physics.drivetrain.follower.TrajectorySampler;
+import frckit.physics.state.MutableRigidBodyState2d;
+import frckit.util.MutablePose2d;
+import frckit.util.PoseHistory;
+
+/**
+ * Simulates a differential drivetrain following a trajectory in closed loop with DrivetrainTrajectoryFollower.
+ *
+ * The controller computes its feedforward with a nominal dynamics model, while the simulated drivetrain (the plant)
+ * moves according to a possibly different dynamics model, so the effect of model error can be measured.  The voltages
+ * are clamped to a maximum, and the controller can be given a pose measurement which is delayed by a fixed latency.
+ * The plant is integrated with semi-implicit Euler at the same rate as the controller runs.  The control loop uses the
+ * allocation free paths of the follower and dynamics, so only setting up a run allocates.
+ *
+ * A simulation can be run many times (with different trajectories or feedback), but is not thread safe.
+ */
+public class FollowerSimulation {
+    private static final double EXTRA_TIME = 1.0; //Time to keep simulating past the end of the trajectory, in seconds
+
+    /**
+     * The result of a single simulated run.
+     */
+    public static class Result {
+        private double endTranslationError;
+        private double endRotationError;
+        private double maxTrackingError;
+        private double rmsTrackingError;
+        private double saturationFraction;
+        private int steps;
+
+        /**
+         * @return The distance between the final pose of the drivetrain and the end of the trajectory, in meters
+         */
+        public double getEndTranslationError() {
+            return endTranslationError;
+        }
+
+        /**
+         * @return The absolute heading difference between the final pose of the drivetrain and the end of the
+         *         trajectory, in radians
+         */
+        public double getEndRotationError() {
+            return endRotationError;
+        }
+
+        /**
+         * @return The largest distance between the drivetrain and the trajectory at any step, in meters
+         */
+        public double getMaxTrackingError() {
+            return maxTrackingError;
+        }
+
+        /**
+         * @return The root mean square distance between the drivetrain and the trajectory over all steps, in meters
+         */
+        public double getRmsTrackingError() {
+            return rmsTrackingError;
+        }
+
+        /**
+         * @return The fraction of steps where the commanded voltage on either side was clamped to the maximum
+         */
+        public double getSaturationFraction() {
+            return saturationFraction;
+        }
+
+        /**
+         * @return The number of steps simulated
+         */
+        public int getSteps() {
+            return steps;
+        }
+    }
+
+    private final DifferentialDrivetrainDynamics plant;
+    private final DifferentialDrivetrainDynamics controller;
+    private final double dt;
+    private final double maxVoltage;
+    private final double latency;
+
+    private final DifferentialDrivetrainIntegrator integrator;
+    private final PoseHistory history;
+    private final MutablePose2d measured = new MutablePose2d();
+    private final MutableRigidBodyState2d target = new MutableRigidBodyState2d();
+    private final MutableDifferentialWheelState command = new MutableDifferentialWheelState();
+
+    /**
+     * Creates a new FollowerSimulation.
+     * @param plant The dynamics used to simulate the drivetrain
+     * @param controller The nominal dynamics used by the controller to compute the feedforward
+     * @param dt The time step of the controller and the simulation, in seconds
+     * @param maxVoltage The largest voltage magnitude which can be applied to either side of the drive
+     * @param latency The delay between the drivetrain being at a pose and the controller seeing it, in seconds
+     */
+    public FollowerSimulation(DifferentialDrivetrainDynamics plant, DifferentialDrivetrainDynamics controller,
+                              double dt, double maxVoltage, double latency) {
+        if (!(dt > 0.0)) {
+            throw new IllegalArgumentException("dt must be positive, got " + dt);
+        }
+        if (latency < 0.0) {
+            throw new IllegalArgumentException("Latency must not be negative, got " + latency);
+        }
+        this.plant = plant;
+        this.controller = controller;
+        this.dt = dt;
+        this.maxVoltage = maxVoltage;
+        this.latency = latency;
+        this.integrator = new DifferentialDrivetrainIntegrator(plant, DifferentialDrivetrainIntegrator.Method.SEMI_IMPLICIT_EULER);
+        this.history = new PoseHistory((int) Math.ceil(latency / dt) + 2);
+    }
+
+    /**
+     * @return The dynamics used to simulate the drivetrain
+     */
+    public DifferentialDrivetrainDynamics getPlant() {
+        return plant;
+    }
+
+    /**
+     * Simulates the drivetrain following a trajectory, starting at rest at the start of the trajectory.
+     * @param trajectory The trajectory to follow
+     * @param feedback The feedback to use in the follower
+     * @param out The result to write the errors of the run into
+     * @return The result which was passed in
+     */
+    public Result run(Trajectory trajectory, DrivetrainFeedback feedback, Result out) {
+        DrivetrainTrajectoryFollower follower = new DrivetrainTrajectoryFollower(trajectory, feedback);
+        TrajectorySampler reference = new TrajectorySampler(trajectory);
+        Pose2d start = trajectory.getInitialPose();
+        integrator.reset(start.getX(), start.getY(), start.getRotation().getRadians(), 0.0, 0.0);
+        history.reset();
+
+        double endTime = trajectory.getTotalTimeSeconds() + EXTRA_TIME;
+        double maxTrackingError = 0.0;
+        double sumSquaredTrackingError = 0.0;
+        int saturatedSteps = 0;
+        int steps = 0;
+        double time = 0.0;
+        while (!follower.isDone() && time <= endTime) {
+            history.insert(time, integrator.getX(), integrator.getY(), integrator.getTheta());
+            history.get(time - latency, measured);
+
+            follower.update(time, measured, target);
+            controller.inverseDynamics(target, command);
+            double leftVoltage = command.getLeftVoltage();
+            double rightVoltage = command.getRightVoltage();
+            if (Math.abs(leftVoltage) > maxVoltage || Math.abs(rightVoltage) > maxVoltage) {
+                saturatedSteps++;
+                leftVoltage = clamp(leftVoltage);
+                rightVoltage = clamp(rightVoltage);
+            }
+            integrator.step(leftVoltage, rightVoltage, dt);
+            steps++;
+            time = steps * dt;
+
+            reference.sample(time);
+            double trackingError = Math.hypot(reference.getX() - integrator.getX(), reference.getY() - integrator.getY());
+            maxTrackingError = Math.max(maxTrackingError, trackingError);
+            sumSquaredTrackingError += trackingError * trackingError;
+        }
+
+        Pose2d end = trajectory.sample(trajectory.getTotalTimeSeconds()).poseMeters;
+        out.endTranslationError = Math.hypot(end.getX() - integrator.getX(), end.getY() - integrator.getY());
+        out.endRotationError = Math.abs(Math.IEEEremainder(integrator.getTheta() - end.getRotation().getRadians(),
+                2.0 * Math.PI));
+        out.maxTrackingError = maxTrackingError;
+        out.rmsTrackingError = steps == 0 ? 0.0 : Math.sqrt(sumSquaredTrackingError / steps);
+        out.saturationFraction = steps == 0 ? 0.0 : (double) saturatedSteps / steps;
+        out.steps = steps;
+        return out;
+    }
+
+    private double clamp(double voltage) {
+        return Math.max(-maxVoltage, Math.min(maxVoltage, voltage));
+    }
+}
@@ -0,0 +1,477 @@
+package frckit.physics.drivetrain.analysis;
+
+import edu.wpi.first.math.trajectory.Trajectory;
+import frckit.physics.drivetrain.differential.DifferentialDrivetrainDynamics;
+import frckit.physics.drivetrain.follower.NonholonomicNonlinearFeedback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tunes the gains (kBeta and kZeta) of NonholonomicNonlinearFeedback offline, by simulating a set of trajectories with
+ * FollowerSimulation and searching for the gains with the lowest cost.
+ *
+ * The cost of a pair of gains is the mean over the trajectories of the RMS tracking error (in meters) plus the fraction
+ * of steps where the voltage was saturated, times a weight.  The search first evaluates a grid over the allowed range of
+ * each gain, spread across threads with fork/join.  Nelder-Mead searches are then started from the best few grid points
+ * and run concurrently, with points outside the allowed ranges clamped back into them.  Every evaluation is
+ * deterministic, so the result does not depend on the number of threads.
+ *
+ * The settings must not be changed while tuning.
+ */
+public class GainTuner {
+    private static final double EXPANSION = 2.0;
+    private static final double CONTRACTION = 0.5;
+    private static final double SHRINK = 0.5;
+
+    //The objects reused between the evaluations made by one thread
+    private static class Workspace {
+        private final FollowerSimulation simulation;
+        private final FollowerSimulation.Result result = new FollowerSimulation.Result();
+
+        private Workspace(FollowerSimulation simulation) {
+            this.simulation = simulation;
+        }
+    }
+
+    //Totals over every evaluation made while tuning, updated concurrently by the searches
+    private static class Counters {
+        private final AtomicLong evaluations = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+    }
+
+    /**
+     * The result of tuning.
+     */
+    public static class Result {
+        private final double kBeta;
+        private final double kZeta;
+        private final double cost;
+        private final double[] betas;
+        private final double[] zetas;
+        private final double[] gridCosts;
+        private final long evaluations;
+        private final double averageEvaluationTime;
+        private final double wallTime;
+
+        private Result(double kBeta, double kZeta, double cost, double[] betas, double[] zetas, double[] gridCosts,
+                       long evaluations, double averageEvaluationTime, double wallTime) {
+            this.kBeta = kBeta;
+            this.kZeta = kZeta;
+            this.cost = cost;
+            this.betas = betas;
+            this.zetas = zetas;
+            this.gridCosts = gridCosts;
+            this.evaluations = evaluations;
+            this.averageEvaluationTime = averageEvaluationTime;
+            this.wallTime = wallTime;
+        }
+
+        /**
+         * @return The best kBeta found
+         */
+        public double getKBeta() {
+            return kBeta;
+        }
+
+        /**
+         * @return The best kZeta found
+         */
+        public double getKZeta() {
+            return kZeta;
+        }
+
+        /**
+         * @return The cost of the best gains
+         */
+        public double getCost() {
+            return cost;
+        }
+
+        /**
+         * @return A feedback using the best gains
+         */
+        public NonholonomicNonlinearFeedback createFeedback() {
+            return new NonholonomicNonlinearFeedback(kBeta, kZeta);
+        }
+
+        /**
+         * @return The number of grid points along each gain
+         */
+        public int getGridSize() {
+            return betas.length;
+        }
+
+        /**
+         * @param betaIndex The index of the grid point along kBeta
+         * @return The kBeta of the grid point
+         */
+        public double getGridBeta(int betaIndex) {
+            return betas[betaIndex];
+        }
+
+        /**
+         * @param zetaIndex The index of the grid point along kZeta
+         * @return The kZeta of the grid point
+         */
+        public double getGridZeta(int zetaIndex) {
+            return zetas[zetaIndex];
+        }
+
+        /**
+         * @param betaIndex The index of the grid point along kBeta
+         * @param zetaIndex The index of the grid point along kZeta
+         * @return The cost of the grid point
+         */
+        public double getGridCost(int betaIndex, int zetaIndex) {
+            return gridCosts[betaIndex * zetas.length + zetaIndex];
+        }
+
+        /**
+         * @return The number of gain pairs evaluated, over the grid and every Nelder-Mead search
+         */
+        public long getEvaluationCount() {
+            return evaluations;
+        }
+
+        /**
+         * @return The average time taken to evaluate the cost of one pair of gains (simulating every trajectory), in
+         *         seconds
+         */
+        public double getAverageEvaluationTime() {
+            return averageEvaluationTime;
+        }
+
+        /**
+         * @return The wall clock time taken to tune, in seconds
+         */
+        public double getWallTime() {
+            return wallTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("kBeta=%.4f kZeta=%.4f cost=%.5f (%d evaluations, %.2fms per evaluation, %.3fs total)",
+                    kBeta, kZeta, cost, evaluations, averageEvaluationTime * 1e3, wallTime);
+        }
+    }
+
+    private final DifferentialDrivetrainDynamics plant;
+    private final DifferentialDrivetrainDynamics controller;
+    private final double dt;
+    private final double maxVoltage;
+    private final double latency;
+
+    private double minBeta = 0.25;
+    private double maxBeta = 8.0;
+    private double minZeta = 0.05;
+    private double maxZeta = 0.95;
+    private int gridSize = 8;
+    private int starts = 4;
+    private int maxIterations = 40;
+    private double tolerance = 1e-4;
+    private double saturationWeight = 0.1;
+
+    /**
+     * Creates a new GainTuner where the controller's model matches the simulated drivetrain exactly.
+     * @param dynamics The dynamics of the drivetrain
+     * @param dt The time step of the controller and the simulation, in seconds
+     * @param maxVoltage The largest voltage magnitude which can be applied to either side of the drive
+     * @param latency The sensor latency, in seconds
+     */
+    public GainTuner(DifferentialDrivetrainDynamics dynamics, double dt, double maxVoltage, double latency) {
+        this(dynamics, dynamics, dt, maxVoltage, latency);
+    }
+
+    /**
+     * Creates a new GainTuner.
+     * @param plant The dynamics used to simulate the drivetrain
+     * @param controller The nominal dynamics used by the controller to compute the feedforward
+     * @param dt The time step of the controller and the simulation, in seconds
+     * @param maxVoltage The largest voltage magnitude which can be applied to either side of the drive
+     * @param latency The sensor latency, in seconds
+     */
+    public GainTuner(DifferentialDrivetrainDynamics plant, DifferentialDrivetrainDynamics controller,
+                     double dt, double maxVoltage, double latency) {
+        if (!(dt > 0.0)) {
+            throw new IllegalArgumentException("dt must be positive, got " + dt);
+        }
+        if (latency < 0.0) {
+            throw new IllegalArgumentException("Latency must not be negative, got " + latency);
+        }
+        this.plant = plant;
+        this.controller = controller;
+        this.dt = dt;
+        this.maxVoltage = maxVoltage;
+        this.latency = latency;
+    }
+
+    /**
+     * Sets the range of kBeta to search.  The default is [0.25, 8].
+     * @param min The smallest kBeta, which must be positive
+     * @param max The largest kBeta
+     */
+    public void setBetaRange(double min, double max) {
+        if (!(min > 0.0 && max > min)) {
+            throw new IllegalArgumentException("kBeta range must be positive and non-empty, got [" + min + ", " + max + "]");
+        }
+        minBeta = min;
+        maxBeta = max;
+    }
+
+    /**
+     * Sets the range of kZeta to search.  The default is [0.05, 0.95].
+     * @param min The smallest kZeta, which must be positive
+     * @param max The largest kZeta, which must be less than 1
+     */
+    public void setZetaRange(double min, double max) {
+        if (!(min > 0.0 && max > min && max < 1.0)) {
+            throw new IllegalArgumentException("kZeta range must be a non-empty range in (0, 1), got [" + min + ", " + max + "]");
+        }
+        minZeta = min;
+        maxZeta = max;
+    }
+
+    /**
+     * Sets the number of grid points along each gain.  The default is 8.
+     * @param gridSize The number of grid points, which must be at least 2
+     */
+    public void setGridSize(int gridSize) {
+        if (gridSize < 2) {
+            throw new IllegalArgumentException("Grid size must be at least 2, got " + gridSize);
+        }
+        this.gridSize = gridSize;
+    }
+
+    /**
+     * Sets the number of Nelder-Mead searches, which start from the best grid points.  The default is 4.
+     * @param starts The number of searches, which must be positive
+     */
+    public void setStarts(int starts) {
+        if (starts <= 0) {
+            throw new IllegalArgumentException("Number of starts must be positive, got " + starts);
+        }
+        this.starts = starts;
+    }
+
+    /**
+     * Sets the limit on the iterations of each Nelder-Mead search, and the relative spread of costs in the simplex
+     * where a search stops early.  The defaults are 40 and 1e-4.
+     * @param maxIterations The largest number of iterations, which may be zero to only search the grid
+     * @param tolerance The relative tolerance
+     */
+    public void setTermination(int maxIterations, double tolerance) {
+        if (maxIterations < 0) {
+            throw new IllegalArgumentException("Max iterations must not be negative, got " + maxIterations);
+        }
+        if (tolerance < 0.0) {
+            throw new IllegalArgumentException("Tolerance must not be negative, got " + tolerance);
+        }
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Sets the weight of the saturation fraction in the cost.  The default of 0.1 makes saturating the voltage for
+     * every step as costly as 10cm of RMS tracking error.
+     * @param saturationWeight The weight, which must not be negative
+     */
+    public void setSaturationWeight(double saturationWeight) {
+        if (saturationWeight < 0.0) {
+            throw new IllegalArgumentException("Saturation weight must not be negative, got " + saturationWeight);
+        }
+        this.saturationWeight = saturationWeight;
+    }
+
+    /**
+     * Computes the cost of a pair of gains.
+     * @param trajectories The trajectories to simulate
+     * @param kBeta The kBeta gain
+     * @param kZeta The kZeta gain
+     * @return The cost, or positive infinity if a simulation did not produce a finite result
+     */
+    public double cost(List<Trajectory> trajectories, double kBeta, double kZeta) {
+        return evaluate(newWorkspace(), trajectories, kBeta, kZeta, null);
+    }
+
+    /**
+     * Tunes the gains using the common fork/join pool.
+     * @param trajectories The trajectories to tune over, which must not be empty
+     * @return The result of tuning
+     */
+    public Result tune(List<Trajectory> trajectories) {
+        return tune(trajectories, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tunes the gains.
+     * @param trajectories The trajectories to tune over, which must not be empty
+     * @param pool The pool to run the simulations in
+     * @return The result of tuning
+     */
+    public Result tune(List<Trajectory> trajectories, ForkJoinPool pool) {
+        if (trajectories.isEmpty()) {
+            throw new IllegalArgumentException("At least one trajectory is needed to tune");
+        }
+        Counters counters = new Counters();
+        long start = System.nanoTime();
+
+        //Grid search
+        double[] betas = new double[gridSize];
+        double[] zetas = new double[gridSize];
+        for (int i = 0; i < gridSize; i++) {
+            betas[i] = minBeta + (maxBeta - minBeta) * i / (gridSize - 1);
+            zetas[i] = minZeta + (maxZeta - minZeta) * i / (gridSize - 1);
+        }
+        double[] gridCosts = new double[gridSize * gridSize];
+        pool.invoke(new MonteCarloAnalysis.RunTask<>(0, gridCosts.length, this::newWorkspace, (index, workspace) ->
+                gridCosts[index] = evaluate(workspace, trajectories,
+                        betas[index / gridSize], zetas[index % gridSize], counters)
+        ));
+
+        //Nelder-Mead from the best grid points, one search per task
+        Integer[] order = new Integer[gridCosts.length];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> gridCosts[i]).thenComparingInt(i -> i));
+        List<ForkJoinTask<double[]>> searches = new ArrayList<>();
+        for (int i = 0; i < Math.min(starts, order.length); i++) {
+            int index = order[i];
+            searches.add(pool.submit(() -> nelderMead(trajectories, betas[index / gridSize], zetas[index % gridSize],
+                    gridCosts[index], counters)));
+        }
+
+        //Keep the best search, preferring earlier starts on ties so the result is deterministic
+        double[] best = null;
+        for (ForkJoinTask<double[]> search : searches) {
+            double[] candidate = search.join();
+            if (best == null || candidate[2] < best[2]) {
+                best = candidate;
+            }
+        }
+        double wallTime = (System.nanoTime() - start) / 1e9;
+
+        long evaluations = counters.evaluations.get();
+        return new Result(best[0], best[1], best[2], betas, zetas, gridCosts, evaluations,
+                evaluations == 0 ? 0.0 : counters.nanos.get() / 1e9 / evaluations, wallTime);
+    }
+
+    //Returns {kBeta, kZeta, cost} of the best point found
+    private double[] nelderMead(List<Trajectory> trajectories, double beta, double zeta, double cost,
+                                Counters counters) {
+        Workspace workspace = newWorkspace();
+
+        //The initial simplex steps one grid spacing along each gain, inwards at the edges of the range
+        double betaStep = (maxBeta - minBeta) / (gridSize - 1);
+        double zetaStep = (maxZeta - minZeta) / (gridSize - 1);
+        double[] betas = {beta, beta + (beta + betaStep > maxBeta ? -betaStep : betaStep), beta};
+        double[] zetas = {zeta, zeta, zeta + (zeta + zetaStep > maxZeta ? -zetaStep : zetaStep)};
+        double[] costs = {cost, 0.0, 0.0};
+        for (int i = 1; i < 3; i++) {
+            costs[i] = evaluate(workspace, trajectories, betas[i], zetas[i], counters);
+        }
+
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            sort(betas, zetas, costs);
+            if (costs[2] - costs[0] <= tolerance * Math.abs(costs[0])) {
+                break;
+            }
+
+            //Reflect the worst point through the centroid of the other two
+            double centroidBeta = (betas[0] + betas[1]) / 2.0;
+            double centroidZeta = (zetas[0] + zetas[1]) / 2.0;
+            double reflectedBeta = clampBeta(centroidBeta + (centroidBeta - betas[2]));
+            double reflectedZeta = clampZeta(centroidZeta + (centroidZeta - zetas[2]));
+            double reflectedCost = evaluate(workspace, trajectories, reflectedBeta, reflectedZeta, counters);
+
+            if (reflectedCost < costs[0]) {
+                double expandedBeta = clampBeta(centroidBeta + EXPANSION * (centroidBeta - betas[2]));
+                double expandedZeta = clampZeta(centroidZeta + EXPANSION * (centroidZeta - zetas[2]));
+                double expandedCost = evaluate(workspace, trajectories, expandedBeta, expandedZeta, counters);
+                if (expandedCost < reflectedCost) {
+                    replaceWorst(betas, zetas, costs, expandedBeta, expandedZeta, expandedCost);
+                } else {
+                    replaceWorst(betas, zetas, costs, reflectedBeta, reflectedZeta, reflectedCost);
+                }
+            } else if (reflectedCost < costs[1]) {
+                replaceWorst(betas, zetas, costs, reflectedBeta, reflectedZeta, reflectedCost);
+            } else {
+                //Contract towards the better of the reflected and worst points
+                boolean outside = reflectedCost < costs[2];
+                double towardsBeta = outside ? reflectedBeta : betas[2];
+                double towardsZeta = outside ? reflectedZeta : zetas[2];
+                double contractedBeta = centroidBeta + CONTRACTION * (towardsBeta - centroidBeta);
+                double contractedZeta = centroidZeta + CONTRACTION * (towardsZeta - centroidZeta);
+                double contractedCost = evaluate(workspace, trajectories, contractedBeta, contractedZeta, counters);
+                if (contractedCost < Math.min(reflectedCost, costs[2])) {
+                    replaceWorst(betas, zetas, costs, contractedBeta, contractedZeta, contractedCost);
+                } else {
+                    //Shrink towards the best point
+                    for (int i = 1; i < 3; i++) {
+                        betas[i] = betas[0] + SHRINK * (betas[i] - betas[0]);
+                        zetas[i] = zetas[0] + SHRINK * (zetas[i] - zetas[0]);
+                        costs[i] = evaluate(workspace, trajectories, betas[i], zetas[i], counters);
+                    }
+                }
+            }
+        }
+        sort(betas, zetas, costs);
+        return new double[]{betas[0], zetas[0], costs[0]};
+    }
+
+    private double evaluate(Workspace workspace, List<Trajectory> trajectories, double kBeta, double kZeta,
+                            Counters counters) {
+        long start = System.nanoTime();
+        NonholonomicNonlinearFeedback feedback = new NonholonomicNonlinearFeedback(kBeta, kZeta);
+        double total = 0.0;
+        for (Trajectory trajectory : trajectories) {
+            FollowerSimulation.Result result = workspace.simulation.run(trajectory, feedback, workspace.result);
+            total += result.getRmsTrackingError() + saturationWeight * result.getSaturationFraction();
+        }
+        double cost = total / trajectories.size();
+        if (counters != null) {
+            counters.evaluations.incrementAndGet();
+            counters.nanos.addAndGet(System.nanoTime() - start);
+        }
+        return Double.isFinite(cost) ? cost : Double.POSITIVE_INFINITY;
+    }
+
+    private Workspace newWorkspace() {
+        return new Workspace(new FollowerSimulation(plant, controller, dt, maxVoltage, latency));
+    }
+
+    private double clampBeta(double beta) {
+        return Math.max(minBeta, Math.min(maxBeta, beta));
+    }
+
+    private double clampZeta(double zeta) {
+        return Math.max(minZeta, Math.min(maxZeta, zeta));
+    }
+
+    private static void replaceWorst(double[] betas, double[] zetas, double[] costs, double beta, double zeta, double cost) {
+        betas[2] = beta;
+        zetas[2] = zeta;
+        costs[2] = cost;
+    }
+
+    //Sorts the three points of the simplex by cost (insertion sort, stable)
+    private static void sort(double[] betas, double[] zetas, double[] costs) {
+        for (int i = 1; i < 3; i++) {
+            for (int j = i; j > 0 && costs[j] < costs[j - 1]; j--) {
+                swap(betas, j);
+                swap(zetas, j);
+                swap(costs, j);
+            }
+        }
+    }
+
+    private static void swap(double[] values, int j) {
+        double temp = values[j];
+        values[j] = values[j - 1];
+        values[j - 1] = temp;
+    }
+}
@@ -0,0 +1,234 @@
+package frckit.physics.drivetrain.analysis;
+
+import edu.wpi.first.math.trajectory.Trajectory;
+import frckit.physics.drivetrain.differential.DifferentialDrivetrainDynamics;
+import frckit.physics.drivetrain.follower.DrivetrainFeedback;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Measures how robust trajectory following is to model error, by simulating many closed loop runs (with
+ * FollowerSimulation) where the simulated drivetrain's parameters and sensor latency are randomly perturbed from the
+ * nominal model used by the controller.
+ *
+ * Runs are spread across threads with fork/join.  Each run draws its parameters from its own random source, seeded from
+ * the base seed and the run's index, and writes its result into its own slot, so the results are identical regardless
+ * of the number of threads or the order runs complete in.
+ */
+public class MonteCarloAnalysis {
+    private static final int RUNS_PER_TASK = 4; //Runs simulated by a single fork/join task before it stops splitting
+
+    /**
+     * The results of a set of runs.
+     */
+    public static class Result {
+        private final Distribution endTranslationError;
+        private final Distribution endRotationError;
+        private final Distribution maxTrackingError;
+        private final Distribution rmsTrackingError;
+        private final Distribution saturationFraction;
+        private final double wallTime;
+
+        private Result(double[] endTranslationError, double[] endRotationError, double[] maxTrackingError,
+                       double[] rmsTrackingError, double[] saturationFraction, double wallTime) {
+            this.endTranslationError = new Distribution(endTranslationError);
+            this.endRotationError = new Distribution(endRotationError);
+            this.maxTrackingError = new Distribution(maxTrackingError);
+            this.rmsTrackingError = new Distribution(rmsTrackingError);
+            this.saturationFraction = new Distribution(saturationFraction);
+            this.wallTime = wallTime;
+        }
+
+        /**
+         * @return The distribution of the distance between the final pose and the end of the trajectory, in meters
+         */
+        public Distribution getEndTranslationError() {
+            return endTranslationError;
+        }
+
+        /**
+         * @return The distribution of the heading error at the end of the trajectory, in radians
+         */
+        public Distribution getEndRotationError() {
+            return endRotationError;
+        }
+
+        /**
+         * @return The distribution of the worst case tracking error of each run, in meters
+         */
+        public Distribution getMaxTrackingError() {
+            return maxTrackingError;
+        }
+
+        /**
+         * @return The distribution of the RMS tracking error of each run, in meters
+         */
+        public Distribution getRmsTrackingError() {
+            return rmsTrackingError;
+        }
+
+        /**
+         * @return The distribution of the fraction of each run where the voltage was saturated
+         */
+        public Distribution getSaturationFraction() {
+            return saturationFraction;
+        }
+
+        /**
+         * @return The number of runs
+         */
+        public int getRuns() {
+            return endTranslationError.size();
+        }
+
+        /**
+         * @return The wall clock time taken to simulate every run, in seconds
+         */
+        public double getWallTime() {
+            return wallTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d runs in %.3fs%n", getRuns(), wallTime)
+                    + "End translation error (m):   " + endTranslationError + System.lineSeparator()
+                    + "End rotation error (rad):    " + endRotationError + System.lineSeparator()
+                    + "Max tracking error (m):      " + maxTrackingError + System.lineSeparator()
+                    + "RMS tracking error (m):      " + rmsTrackingError + System.lineSeparator()
+                    + "Saturation fraction:         " + saturationFraction;
+        }
+    }
+
+    private final DifferentialDrivetrainDynamics nominal;
+    private final ParameterUncertainty uncertainty;
+    private final Supplier<DrivetrainFeedback> feedbackFactory;
+    private final double dt;
+    private final double maxVoltage;
+
+    /**
+     * Creates a new MonteCarloAnalysis.
+     * @param nominal The nominal drivetrain model, which the controller uses and the simulated drivetrain is perturbed
+     *                from
+     * @param uncertainty How far the simulated drivetrain may differ from the nominal model
+     * @param feedbackFactory Creates the feedback for each run.  This is called from multiple threads.
+     * @param dt The time step of the controller and the simulation, in seconds
+     * @param maxVoltage The largest voltage magnitude which can be applied to either side of the drive
+     */
+    public MonteCarloAnalysis(DifferentialDrivetrainDynamics nominal, ParameterUncertainty uncertainty,
+                              Supplier<DrivetrainFeedback> feedbackFactory, double dt, double maxVoltage) {
+        this.nominal = nominal;
+        this.uncertainty = uncertainty;
+        this.feedbackFactory = feedbackFactory;
+        this.dt = dt;
+        this.maxVoltage = maxVoltage;
+    }
+
+    /**
+     * Simulates a set of runs using the common fork/join pool.
+     * @param trajectory The trajectory to follow in every run
+     * @param runs The number of runs, which must be positive
+     * @param seed The base seed, which determines the parameters of every run
+     * @return The results of the runs
+     */
+    public Result run(Trajectory trajectory, int runs, long seed) {
+        return run(trajectory, runs, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Simulates a set of runs.
+     * @param trajectory The trajectory to follow in every run
+     * @param runs The number of runs, which must be positive
+     * @param seed The base seed, which determines the parameters of every run
+     * @param pool The pool to run the simulations in
+     * @return The results of the runs
+     */
+    public Result run(Trajectory trajectory, int runs, long seed, ForkJoinPool pool) {
+        if (runs <= 0) {
+            throw new IllegalArgumentException("Number of runs must be positive, got " + runs);
+        }
+        double[] endTranslationError = new double[runs];
+        double[] endRotationError = new double[runs];
+        double[] maxTrackingError = new double[runs];
+        double[] rmsTrackingError = new double[runs];
+        double[] saturationFraction = new double[runs];
+
+        long start = System.nanoTime();
+        pool.invoke(new RunTask<>(0, runs, FollowerSimulation.Result::new, (run, result) -> {
+            simulate(trajectory, seed, run, result);
+            endTranslationError[run] = result.getEndTranslationError();
+            endRotationError[run] = result.getEndRotationError();
+            maxTrackingError[run] = result.getMaxTrackingError();
+            rmsTrackingError[run] = result.getRmsTrackingError();
+            saturationFraction[run] = result.getSaturationFraction();
+        }));
+        double wallTime = (System.nanoTime() - start) / 1e9;
+
+        return new Result(endTranslationError, endRotationError, maxTrackingError, rmsTrackingError,
+                saturationFraction, wallTime);
+    }
+
+    /**
+     * Simulates a single run.  This produces the same result as the run with the same index in
+     * {@link #run(Trajectory, int, long)}, which is useful for investigating an outlier.
+     * @param trajectory The trajectory to follow
+     * @param seed The base seed
+     * @param run The index of the run
+     * @param out The result to write the errors of the run into
+     * @return The result which was passed in
+     */
+    public FollowerSimulation.Result simulate(Trajectory trajectory, long seed, int run, FollowerSimulation.Result out) {
+        SplittableRandom random = new SplittableRandom(runSeed(seed, run));
+        DifferentialDrivetrainDynamics plant = uncertainty.sampleDynamics(nominal, random);
+        double latency = uncertainty.sampleLatency(random);
+        FollowerSimulation simulation = new FollowerSimulation(plant, nominal, dt, maxVoltage, latency);
+        return simulation.run(trajectory, feedbackFactory.get(), out);
+    }
+
+    //Mixes the run index into the base seed (with the SplitMix64 finalizer), so that neighbouring runs and seeds produce
+    //unrelated random sequences
+    static long runSeed(long seed, int run) {
+        long z = seed + (run + 1L) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    interface RunConsumer<T> {
+        void accept(int run, T workspace);
+    }
+
+    //Splits a range of runs in half until it is small enough to simulate directly.  Each of those smallest tasks
+    //creates one workspace (objects reused between its runs, such as the result) and passes it to every run.
+    static class RunTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final Supplier<T> workspaceFactory;
+        private final RunConsumer<T> consumer;
+
+        RunTask(int start, int end, Supplier<T> workspaceFactory, RunConsumer<T> consumer) {
+            this.start = start;
+            this.end = end;
+            this.workspaceFactory = workspaceFactory;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= RUNS_PER_TASK) {
+                T workspace = workspaceFactory.get();
+                for (int run = start; run < end; run++) {
+                    consumer.accept(run, workspace);
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new RunTask<>(start, middle, workspaceFactory, consumer),
+                        new RunTask<>(middle, end, workspaceFactory, consumer));
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package frckit.physics.drivetrain.analysis;
+
+import frckit.physics.DCMotorDynamics;
+import frckit.physics.drivetrain.differential.DifferentialDrivetrainDynamics;
+
+import java.util.SplittableRandom;
+
+/**
+ * Describes how far the real drivetrain may differ from its nominal model, for use in Monte-Carlo analysis.  Each
+ * tolerance is a fraction of the nominal value (for example, 0.1 for +/- 10%), and values are drawn uniformly within
+ * the tolerance.  The Kv and Ks of each side of the drive are drawn independently.
+ */
+public class ParameterUncertainty {
+    private final double massTolerance;
+    private final double moiTolerance;
+    private final double kvTolerance;
+    private final double ksTolerance;
+    private final double latency;
+    private final double latencyTolerance;
+
+    /**
+     * Creates a new ParameterUncertainty
+     * @param massTolerance The fractional tolerance of the mass
+     * @param moiTolerance The fractional tolerance of the moment of inertia
+     * @param kvTolerance The fractional tolerance of the Kv (volts per speed) of each transmission
+     * @param ksTolerance The fractional tolerance of the Ks (friction voltage) of each transmission
+     * @param latency The nominal sensor latency, in seconds
+     * @param latencyTolerance The fractional tolerance of the sensor latency
+     */
+    public ParameterUncertainty(double massTolerance, double moiTolerance, double kvTolerance, double ksTolerance,
+                                double latency, double latencyTolerance) {
+        checkTolerance(massTolerance, "Mass");
+        checkTolerance(moiTolerance, "MOI");
+        checkTolerance(kvTolerance, "Kv");
+        checkTolerance(ksTolerance, "Ks");
+        checkTolerance(latencyTolerance, "Latency");
+        if (latency < 0.0) {
+            throw new IllegalArgumentException("Latency must not be negative, got " + latency);
+        }
+        this.massTolerance = massTolerance;
+        this.moiTolerance = moiTolerance;
+        this.kvTolerance = kvTolerance;
+        this.ksTolerance = ksTolerance;
+        this.latency = latency;
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Creates a new ParameterUncertainty with the same tolerance for every parameter
+     * @param tolerance The fractional tolerance of every parameter
+     * @param latency The nominal sensor latency, in seconds
+     * @return The resulting uncertainty
+     */
+    public static ParameterUncertainty uniform(double tolerance, double latency) {
+        return new ParameterUncertainty(tolerance, tolerance, tolerance, tolerance, latency, tolerance);
+    }
+
+    /**
+     * @return The fractional tolerance of the mass
+     */
+    public double getMassTolerance() {
+        return massTolerance;
+    }
+
+    /**
+     * @return The fractional tolerance of the moment of inertia
+     */
+    public double getMoiTolerance() {
+        return moiTolerance;
+    }
+
+    /**
+     * @return The fractional tolerance of the Kv (volts per speed) of each transmission
+     */
+    public double getKvTolerance() {
+        return kvTolerance;
+    }
+
+    /**
+     * @return The fractional tolerance of the Ks (friction voltage) of each transmission
+     */
+    public double getKsTolerance() {
+        return ksTolerance;
+    }
+
+    /**
+     * @return The nominal sensor latency, in seconds
+     */
+    public double getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return The fractional tolerance of the sensor latency
+     */
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    /**
+     * Draws a perturbed drivetrain model
+     * @param nominal The nominal model
+     * @param random The random source to draw from
+     * @return The perturbed model
+     */
+    DifferentialDrivetrainDynamics sampleDynamics(DifferentialDrivetrainDynamics nominal, SplittableRandom random) {
+        return new DifferentialDrivetrainDynamics(
+                nominal.getMass() * draw(massTolerance, random),
+                nominal.getMoi() * draw(moiTolerance, random),
+                nominal.getAngularDrag(),
+                nominal.getWheelRadius(),
+                nominal.getEffectiveWheelbaseRadius(),
+                sampleTransmission(nominal.getLeftTransmission(), random),
+                sampleTransmission(nominal.getRightTransmission(), random)
+        );
+    }
+
+    /**
+     * Draws a perturbed sensor latency
+     * @param random The random source to draw from
+     * @return The perturbed latency, in seconds
+     */
+    double sampleLatency(SplittableRandom random) {
+        return latency * draw(latencyTolerance, random);
+    }
+
+    private DCMotorDynamics sampleTransmission(DCMotorDynamics nominal, SplittableRandom random) {
+        return new DCMotorDynamics(
+                nominal.getSpeedPerVolt() / draw(kvTolerance, random), //Kv is volts per speed, so divide
+                nominal.getTorquePerVolt(),
+                nominal.getFrictionVoltage() * draw(ksTolerance, random)
+        );
+    }
+
+    //Draws a scale factor uniformly in [1 - tolerance, 1 + tolerance]
+    private static double draw(double tolerance, SplittableRandom random) {
+        return 1.0 + tolerance * (2.0 * random.nextDouble() - 1.0);
+    }
+
+    private static void checkTolerance(double tolerance, String name) {
+        if (tolerance < 0.0 || tolerance >= 1.0) {
+            throw new IllegalArgumentException(name + " tolerance must be in [0, 1), got " + tolerance);
+        }
+    }
+}
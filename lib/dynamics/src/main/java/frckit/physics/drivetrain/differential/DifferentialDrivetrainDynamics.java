@@ -1,6 +1,7 @@
 package frckit.physics.drivetrain.differential;
 
 import frckit.physics.DCMotorDynamics;
+import frckit.physics.state.MutableRigidBodyState2d;
 import frckit.physics.state.RigidBodyState2d;
 
 public class DifferentialDrivetrainDynamics {
@@ -171,6 +172,41 @@ public class DifferentialDrivetrainDynamics {
         );
     }
 
+    /**
+     * @return The mass of the vehicle in kg
+     */
+    public double getMass() {
+        return mass;
+    }
+
+    /**
+     * @return The rotational moment of inertia of the vehicle in Kg * m^2
+     */
+    public double getMoi() {
+        return moi;
+    }
+
+    /**
+     * @return The angular drag factor of the vehicle in N*m / rad/s
+     */
+    public double getAngularDrag() {
+        return angularDrag;
+    }
+
+    /**
+     * @return The radius of the vehicle's drive wheel, in meters
+     */
+    public double getWheelRadius() {
+        return wheelRadius;
+    }
+
+    /**
+     * @return The radius of the vehicle's empirical track width, in meters
+     */
+    public double getEffectiveWheelbaseRadius() {
+        return effectiveWheelbaseRadius;
+    }
+
     /**
      * @return The DC motor model for the left side transmission
      */
@@ -192,12 +228,36 @@ public class DifferentialDrivetrainDynamics {
      * @return The command which can be applied to the drive transmissions
      */
     public DifferentialWheelState inverseDynamics(RigidBodyState2d chassisState) {
-        //Unpack data
-        double v = chassisState.getVx();
-        double omega = chassisState.getOmega();
-        double a = chassisState.getAx();
-        double alpha = chassisState.getAlpha();
+        MutableDifferentialWheelState out = new MutableDifferentialWheelState();
+        inverseDynamics(chassisState.getVx(), chassisState.getOmega(), chassisState.getAx(), chassisState.getAlpha(), out);
+        return out.toDifferentialWheelState();
+    }
 
+    /**
+     * Performs inverse dynamics on a caller owned chassis state, writing the result into a caller owned wheel state.
+     * This does not allocate.
+     * @param chassisState The desired chassis state
+     * @param out The wheel state to write the command which can be applied to the drive transmissions into
+     * @return The wheel state which was passed in
+     */
+    public MutableDifferentialWheelState inverseDynamics(MutableRigidBodyState2d chassisState,
+                                                         MutableDifferentialWheelState out) {
+        return inverseDynamics(chassisState.getVx(), chassisState.getOmega(), chassisState.getAx(), chassisState.getAlpha(), out);
+    }
+
+    /**
+     * Performs inverse dynamics on primitive values, writing the result into a caller owned wheel state.  This does not
+     * allocate.
+     * @param v The desired linear velocity of the chassis, in m/s
+     * @param omega The desired angular velocity of the chassis, in rad/s
+     * @param a The desired linear acceleration of the chassis, in m/s^2
+     * @param alpha The desired angular acceleration of the chassis, in rad/s^2
+     * @param out The wheel state to write the command which can be applied to the drive transmissions into
+     * @return The wheel state which was passed in
+     * @see #inverseDynamics(RigidBodyState2d)
+     */
+    public MutableDifferentialWheelState inverseDynamics(double v, double omega, double a, double alpha,
+                                                         MutableDifferentialWheelState out) {
         //Do inverse kinematics
         double leftWheelOmega = (v - effectiveWheelbaseRadius * omega) / wheelRadius;
         double rightWheelOmega = (v + effectiveWheelbaseRadius * omega) / wheelRadius;
@@ -216,7 +276,7 @@ public class DifferentialDrivetrainDynamics {
         double leftVoltage = leftTransmission.inverseDynamics(leftWheelOmega, leftWheelTorque);
         double rightVoltage = rightTransmission.inverseDynamics(rightWheelOmega, rightWheelTorque);
 
-        return new DifferentialWheelState(
+        return out.set(
                 leftWheelOmega,
                 rightWheelOmega,
                 leftWheelAlpha,
@@ -225,4 +285,46 @@ public class DifferentialDrivetrainDynamics {
                 rightVoltage
         );
     }
+
+    /**
+     * Performs forward dynamics, which given the current chassis speed (linear and angular) and the voltages applied to
+     * each side of the drive, solves for the resulting chassis acceleration (linear and angular).
+     * @param chassisState The current chassis state.  Only the velocities are used.
+     * @param leftVoltage The voltage applied to the left transmission
+     * @param rightVoltage The voltage applied to the right transmission
+     * @return The chassis state, with the same velocities and the resulting accelerations
+     */
+    public RigidBodyState2d forwardDynamics(RigidBodyState2d chassisState, double leftVoltage, double rightVoltage) {
+        MutableRigidBodyState2d out = new MutableRigidBodyState2d();
+        forwardDynamics(chassisState.getVx(), chassisState.getOmega(), leftVoltage, rightVoltage, out);
+        return out.toRigidBodyState2d();
+    }
+
+    /**
+     * Performs forward dynamics on primitive values, writing the result into a caller owned state.  This is the inverse
+     * of {@link #inverseDynamics(double, double, double, double, MutableDifferentialWheelState)}, and does not allocate.
+     * @param v The current linear velocity of the chassis, in m/s
+     * @param omega The current angular velocity of the chassis, in rad/s
+     * @param leftVoltage The voltage applied to the left transmission
+     * @param rightVoltage The voltage applied to the right transmission
+     * @param out The state to write the chassis velocities and resulting accelerations into
+     * @return The state which was passed in
+     */
+    public MutableRigidBodyState2d forwardDynamics(double v, double omega, double leftVoltage, double rightVoltage,
+                                                   MutableRigidBodyState2d out) {
+        //Do inverse kinematics to find the wheel speeds
+        double leftWheelOmega = (v - effectiveWheelbaseRadius * omega) / wheelRadius;
+        double rightWheelOmega = (v + effectiveWheelbaseRadius * omega) / wheelRadius;
+
+        //Compute the torques produced by the transmissions
+        double leftWheelTorque = leftTransmission.forwardDynamics(leftWheelOmega, leftVoltage);
+        double rightWheelTorque = rightTransmission.forwardDynamics(rightWheelOmega, rightVoltage);
+
+        //Solve the wheel torque equations from inverse dynamics for the accelerations
+        double a = (leftWheelTorque + rightWheelTorque) / (wheelRadius * mass);
+        double alpha = ((rightWheelTorque - leftWheelTorque) * effectiveWheelbaseRadius / wheelRadius
+                - omega * angularDrag) / moi;
+
+        return out.set(v, 0.0, omega, a, 0.0, alpha);
+    }
 }
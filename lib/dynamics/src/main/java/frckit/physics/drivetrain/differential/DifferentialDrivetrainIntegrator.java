@@ -0,0 +1,188 @@
+package frckit.physics.drivetrain.differential;
+
+import frckit.physics.state.MutableRigidBodyState2d;
+import frckit.util.GeomUtil;
+import frckit.util.MutablePose2d;
+
+/**
+ * Simulates the motion of a differential drivetrain by integrating its forward dynamics over fixed time steps, given
+ * the voltages applied to each side of the drive.  The state (pose and chassis velocities) is stored as primitive
+ * values, and stepping the simulation does not allocate, so an entire autonomous routine can be simulated in
+ * milliseconds.
+ *
+ * Two integration methods are available.  Semi-implicit Euler updates the velocities first, then moves the pose along
+ * the arc given by the new velocities.  It is cheap and stable, and accurate enough for small steps (such as a 5ms
+ * simulation step).  RK4 (classical fourth order Runge-Kutta) evaluates the dynamics four times per step, and is much
+ * more accurate for larger steps.  In both cases the voltages are held constant over the step, and the heading is
+ * wrapped to the range [-pi, pi] after each step.
+ */
+public class DifferentialDrivetrainIntegrator {
+    /**
+     * The method used to integrate the dynamics over each step
+     */
+    public enum Method {
+        SEMI_IMPLICIT_EULER,
+        RK4
+    }
+
+    private final DifferentialDrivetrainDynamics dynamics;
+    private final Method method;
+
+    private double x;
+    private double y;
+    private double theta;
+    private double v;
+    private double omega;
+
+    private final MutableRigidBodyState2d derivative = new MutableRigidBodyState2d();
+    private final MutablePose2d pose = new MutablePose2d();
+
+    /**
+     * Creates a new DifferentialDrivetrainIntegrator, starting at rest at the origin
+     * @param dynamics The dynamics of the drivetrain
+     * @param method The integration method
+     */
+    public DifferentialDrivetrainIntegrator(DifferentialDrivetrainDynamics dynamics, Method method) {
+        this.dynamics = dynamics;
+        this.method = method;
+    }
+
+    /**
+     * Resets the state of the simulation
+     * @param x The x coordinate of the drivetrain, in meters
+     * @param y The y coordinate of the drivetrain, in meters
+     * @param theta The heading of the drivetrain, in radians
+     * @param v The linear velocity of the drivetrain, in m/s
+     * @param omega The angular velocity of the drivetrain, in rad/s
+     */
+    public void reset(double x, double y, double theta, double v, double omega) {
+        this.x = x;
+        this.y = y;
+        this.theta = theta;
+        this.v = v;
+        this.omega = omega;
+    }
+
+    /**
+     * Advances the simulation by one step.  This does not allocate.
+     * @param leftVoltage The voltage applied to the left transmission over the step
+     * @param rightVoltage The voltage applied to the right transmission over the step
+     * @param dt The length of the step, in seconds
+     */
+    public void step(double leftVoltage, double rightVoltage, double dt) {
+        if (method == Method.RK4) {
+            stepRK4(leftVoltage, rightVoltage, dt);
+        } else {
+            stepSemiImplicitEuler(leftVoltage, rightVoltage, dt);
+        }
+    }
+
+    /**
+     * @return The x coordinate of the drivetrain, in meters
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return The y coordinate of the drivetrain, in meters
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return The heading of the drivetrain, in radians, wrapped to the range [-pi, pi]
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * @return The linear velocity of the drivetrain, in m/s
+     */
+    public double getVelocity() {
+        return v;
+    }
+
+    /**
+     * @return The angular velocity of the drivetrain, in rad/s
+     */
+    public double getOmega() {
+        return omega;
+    }
+
+    /**
+     * Copies the current pose of the drivetrain
+     * @param out The pose to write the current pose into
+     * @return The pose which was passed in
+     */
+    public MutablePose2d getPose(MutablePose2d out) {
+        return out.set(x, y, theta);
+    }
+
+    /**
+     * @return The method used to integrate the dynamics
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    private void stepSemiImplicitEuler(double leftVoltage, double rightVoltage, double dt) {
+        dynamics.forwardDynamics(v, omega, leftVoltage, rightVoltage, derivative);
+        v += derivative.getAx() * dt;
+        omega += derivative.getAlpha() * dt;
+
+        //Move along the arc given by the new velocities
+        GeomUtil.exp(x, y, theta, v * dt, 0.0, omega * dt, pose);
+        x = pose.getX();
+        y = pose.getY();
+        theta = pose.getTheta();
+    }
+
+    private void stepRK4(double leftVoltage, double rightVoltage, double dt) {
+        double halfDt = dt / 2.0;
+
+        //k1, at the start of the step
+        double theta1 = theta;
+        double v1 = v;
+        double omega1 = omega;
+        dynamics.forwardDynamics(v1, omega1, leftVoltage, rightVoltage, derivative);
+        double a1 = derivative.getAx();
+        double alpha1 = derivative.getAlpha();
+
+        //k2, at the midpoint using k1
+        double theta2 = theta + omega1 * halfDt;
+        double v2 = v + a1 * halfDt;
+        double omega2 = omega + alpha1 * halfDt;
+        dynamics.forwardDynamics(v2, omega2, leftVoltage, rightVoltage, derivative);
+        double a2 = derivative.getAx();
+        double alpha2 = derivative.getAlpha();
+
+        //k3, at the midpoint using k2
+        double theta3 = theta + omega2 * halfDt;
+        double v3 = v + a2 * halfDt;
+        double omega3 = omega + alpha2 * halfDt;
+        dynamics.forwardDynamics(v3, omega3, leftVoltage, rightVoltage, derivative);
+        double a3 = derivative.getAx();
+        double alpha3 = derivative.getAlpha();
+
+        //k4, at the end using k3
+        double theta4 = theta + omega3 * dt;
+        double v4 = v + a3 * dt;
+        double omega4 = omega + alpha3 * dt;
+        dynamics.forwardDynamics(v4, omega4, leftVoltage, rightVoltage, derivative);
+        double a4 = derivative.getAx();
+        double alpha4 = derivative.getAlpha();
+
+        double sixthDt = dt / 6.0;
+        x += sixthDt * (v1 * Math.cos(theta1) + 2.0 * v2 * Math.cos(theta2)
+                + 2.0 * v3 * Math.cos(theta3) + v4 * Math.cos(theta4));
+        y += sixthDt * (v1 * Math.sin(theta1) + 2.0 * v2 * Math.sin(theta2)
+                + 2.0 * v3 * Math.sin(theta3) + v4 * Math.sin(theta4));
+        theta += sixthDt * (omega1 + 2.0 * omega2 + 2.0 * omega3 + omega4);
+        theta = Math.atan2(Math.sin(theta), Math.cos(theta)); //Wrap the same way as GeomUtil.exp does for Euler
+        v += sixthDt * (a1 + 2.0 * a2 + 2.0 * a3 + a4);
+        omega += sixthDt * (alpha1 + 2.0 * alpha2 + 2.0 * alpha3 + alpha4);
+    }
+}
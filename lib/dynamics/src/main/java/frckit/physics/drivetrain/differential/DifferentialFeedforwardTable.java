@@ -0,0 +1,204 @@
+package frckit.physics.drivetrain.differential;
+
+import edu.wpi.first.math.trajectory.Trajectory;
+import frckit.physics.drivetrain.follower.TrajectorySampler;
+
+import java.util.stream.IntStream;
+
+/**
+ * A table of the feedforward (wheel velocities, accelerations, and voltages) for an entire trajectory, computed ahead
+ * of time with inverse dynamics at a uniform time step.  Looking up the feedforward at a given time is then a constant
+ * time index and linear interpolation, rather than running inverse dynamics every loop cycle.
+ *
+ * The table is stored as one primitive array per value.  The chassis angular acceleration is not part of a WPILib
+ * trajectory, so it is computed from finite differences of the angular velocity (velocity times curvature) between
+ * samples.  Since the sample times only increase, the trajectory is sampled in a single pass over its states, rather
+ * than searching it for every sample.  Generation can optionally be split across threads, which helps for long
+ * autonomous routines.
+ */
+public class DifferentialFeedforwardTable {
+    private static final int PARALLEL_CHUNK_SIZE = 256; //Samples generated per task when generating in parallel
+
+    private final double dt;
+    private final double totalTime;
+    private final int size;
+    private final double[] leftVelocities;
+    private final double[] rightVelocities;
+    private final double[] leftAccelerations;
+    private final double[] rightAccelerations;
+    private final double[] leftVoltages;
+    private final double[] rightVoltages;
+
+    private DifferentialFeedforwardTable(double dt, double totalTime, int size) {
+        this.dt = dt;
+        this.totalTime = totalTime;
+        this.size = size;
+        leftVelocities = new double[size];
+        rightVelocities = new double[size];
+        leftAccelerations = new double[size];
+        rightAccelerations = new double[size];
+        leftVoltages = new double[size];
+        rightVoltages = new double[size];
+    }
+
+    /**
+     * Generates a feedforward table for a trajectory on a single thread.
+     * @param dynamics The dynamics of the drivetrain which will follow the trajectory
+     * @param trajectory The trajectory
+     * @param dt The time step between samples in the table, in seconds
+     * @return The generated table
+     */
+    public static DifferentialFeedforwardTable generate(DifferentialDrivetrainDynamics dynamics, Trajectory trajectory,
+                                                        double dt) {
+        return generate(dynamics, trajectory, dt, false);
+    }
+
+    /**
+     * Generates a feedforward table for a trajectory.
+     * @param dynamics The dynamics of the drivetrain which will follow the trajectory
+     * @param trajectory The trajectory
+     * @param dt The time step between samples in the table, in seconds
+     * @param parallel True to split generation across threads (using the common fork join pool)
+     * @return The generated table
+     */
+    public static DifferentialFeedforwardTable generate(DifferentialDrivetrainDynamics dynamics, Trajectory trajectory,
+                                                        double dt, boolean parallel) {
+        if (!(dt > 0.0)) {
+            throw new IllegalArgumentException("dt must be positive, got " + dt);
+        }
+        double totalTime = trajectory.getTotalTimeSeconds();
+        long count = (long) Math.ceil(totalTime / dt) + 1L;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("dt " + dt + " is too small for a trajectory of " + totalTime + "s");
+        }
+        int size = (int) count;
+        DifferentialFeedforwardTable table = new DifferentialFeedforwardTable(dt, totalTime, size);
+
+        //Sample the chassis motion first, since the angular acceleration of each sample depends on its neighbours
+        double[] v = new double[size];
+        double[] omega = new double[size];
+        double[] a = new double[size];
+        TrajectorySampler trajectorySampler = new TrajectorySampler(trajectory);
+        forEachChunk(size, parallel, (start, end) -> {
+            //Search for the start of the chunk, then walk forwards from it
+            TrajectorySampler sampler = new TrajectorySampler(trajectorySampler).seek(table.timeAt(start));
+            for (int i = start; i < end; i++) {
+                sampler.sample(table.timeAt(i));
+                v[i] = sampler.getVelocity();
+                omega[i] = sampler.getVelocity() * sampler.getCurvature();
+                a[i] = sampler.getAcceleration();
+            }
+        });
+
+        //Run inverse dynamics on each sample
+        forEachChunk(size, parallel, (start, end) -> {
+            MutableDifferentialWheelState wheelState = new MutableDifferentialWheelState();
+            for (int i = start; i < end; i++) {
+                dynamics.inverseDynamics(v[i], omega[i], a[i], table.angularAcceleration(omega, i), wheelState);
+                table.leftVelocities[i] = wheelState.getLeftVelocity();
+                table.rightVelocities[i] = wheelState.getRightVelocity();
+                table.leftAccelerations[i] = wheelState.getLeftAcceleration();
+                table.rightAccelerations[i] = wheelState.getRightAcceleration();
+                table.leftVoltages[i] = wheelState.getLeftVoltage();
+                table.rightVoltages[i] = wheelState.getRightVoltage();
+            }
+        });
+        return table;
+    }
+
+    /**
+     * @return The time step between samples in the table, in seconds
+     */
+    public double getDt() {
+        return dt;
+    }
+
+    /**
+     * @return The total time of the trajectory the table was generated from, in seconds
+     */
+    public double getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @return The number of samples in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Looks up the feedforward at the given time along the trajectory, linearly interpolating between the two nearest
+     * samples.  Times outside of the trajectory return the first or last sample.  This does not allocate.
+     * @param time The time along the trajectory, in seconds
+     * @param out The wheel state to write the feedforward into
+     * @return The wheel state which was passed in
+     */
+    public MutableDifferentialWheelState sample(double time, MutableDifferentialWheelState out) {
+        if (!(time > 0.0)) {
+            return get(0, out);
+        }
+        if (time >= totalTime) {
+            return get(size - 1, out);
+        }
+        double position = time / dt;
+        int index = Math.min((int) position, size - 2);
+        //The last step may be shorter than dt, since the last sample is at the end of the trajectory
+        double t = (time - index * dt) / (timeAt(index + 1) - index * dt);
+        int next = index + 1;
+        return out.set(
+                lerp(leftVelocities[index], leftVelocities[next], t),
+                lerp(rightVelocities[index], rightVelocities[next], t),
+                lerp(leftAccelerations[index], leftAccelerations[next], t),
+                lerp(rightAccelerations[index], rightAccelerations[next], t),
+                lerp(leftVoltages[index], leftVoltages[next], t),
+                lerp(rightVoltages[index], rightVoltages[next], t)
+        );
+    }
+
+    /**
+     * Copies a single sample of the table.
+     * @param index The index of the sample, which is at time index * dt (except for the last sample, which is at the
+     *              end of the trajectory)
+     * @param out The wheel state to write the sample into
+     * @return The wheel state which was passed in
+     */
+    public MutableDifferentialWheelState get(int index, MutableDifferentialWheelState out) {
+        return out.set(leftVelocities[index], rightVelocities[index],
+                leftAccelerations[index], rightAccelerations[index],
+                leftVoltages[index], rightVoltages[index]);
+    }
+
+    private double timeAt(int index) {
+        return Math.min(index * dt, totalTime);
+    }
+
+    //Central difference, or one sided at the ends of the table
+    private double angularAcceleration(double[] omega, int index) {
+        if (size < 2) {
+            return 0.0;
+        }
+        int previous = Math.max(index - 1, 0);
+        int next = Math.min(index + 1, size - 1);
+        double elapsed = timeAt(next) - timeAt(previous);
+        return elapsed > 0.0 ? (omega[next] - omega[previous]) / elapsed : 0.0;
+    }
+
+    private static double lerp(double start, double end, double t) {
+        return start + (end - start) * t;
+    }
+
+    private interface ChunkConsumer {
+        void accept(int start, int end);
+    }
+
+    private static void forEachChunk(int size, boolean parallel, ChunkConsumer consumer) {
+        int chunks = (size + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+        IntStream stream = IntStream.range(0, chunks);
+        if (parallel) {
+            stream = stream.parallel();
+        }
+        stream.forEach(chunk -> consumer.accept(chunk * PARALLEL_CHUNK_SIZE,
+                Math.min((chunk + 1) * PARALLEL_CHUNK_SIZE, size)));
+    }
+}
@@ -0,0 +1,315 @@
+package frckit.physics.drivetrain.differential;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.spline.PoseWithCurvature;
+import edu.wpi.first.math.trajectory.Trajectory;
+import frckit.physics.DCMotorDynamics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time parameterizes a path for a differential drivetrain, so that the resulting trajectory is as fast as the
+ * drivetrain's dynamics allow without either side of the drive needing more than a maximum voltage.  This replaces the
+ * velocity and acceleration limits of WPILib's TrajectoryConfig, which know nothing about the motors.
+ *
+ * At a point on the path with curvature k, a chassis velocity v and acceleration a give an angular velocity of k * v
+ * and an angular acceleration of k * a (the change in curvature along the path is neglected, as WPILib's voltage
+ * constraint does).  Substituting these into the inverse dynamics makes the voltage of each side a linear function of
+ * v and a, so the acceleration bounds at a velocity, and the largest velocity which has any feasible acceleration, are
+ * solved for directly rather than searched for.  The velocities are then found with a forward pass (limited by the
+ * largest acceleration) and a backward pass (limited by the largest deceleration), with the acceleration of each
+ * segment checked against the bounds at both of its ends.
+ *
+ * Parameterizing a path takes time linear in the number of points, and allocates only the primitive working arrays and
+ * the output trajectory.  A parameterizer is immutable, and can be shared between threads.
+ */
+public class DifferentialTrajectoryParameterizer {
+    private static final double EPS = 1e-12;
+    private static final int MAX_REFINEMENTS = 8; //Limit on re-solving a segment when the bound at its far end is lower
+
+    private final double mass;
+    private final double moi;
+    private final double angularDrag;
+    private final double wheelRadius;
+    private final double effectiveWheelbaseRadius;
+    private final DCMotorDynamics leftTransmission;
+    private final DCMotorDynamics rightTransmission;
+    private final double maxVoltage;
+    private final double maxVelocity;
+    private final double maxAcceleration;
+
+    /**
+     * Creates a new DifferentialTrajectoryParameterizer which is only limited by the dynamics.
+     * @param dynamics The dynamics of the drivetrain
+     * @param maxVoltage The largest voltage magnitude which may be applied to either side of the drive
+     */
+    public DifferentialTrajectoryParameterizer(DifferentialDrivetrainDynamics dynamics, double maxVoltage) {
+        this(dynamics, maxVoltage, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Creates a new DifferentialTrajectoryParameterizer.
+     * @param dynamics The dynamics of the drivetrain
+     * @param maxVoltage The largest voltage magnitude which may be applied to either side of the drive.  This should
+     *                   leave some headroom below the battery voltage for the feedback to use.
+     * @param maxVelocity An additional limit on the chassis speed, in m/s (which may be infinite)
+     * @param maxAcceleration An additional limit on the magnitude of the chassis acceleration, in m/s^2 (which may be
+     *                        infinite)
+     */
+    public DifferentialTrajectoryParameterizer(DifferentialDrivetrainDynamics dynamics, double maxVoltage,
+                                               double maxVelocity, double maxAcceleration) {
+        if (!(maxVoltage > 0.0)) {
+            throw new IllegalArgumentException("Max voltage must be positive, got " + maxVoltage);
+        }
+        if (!(maxVelocity > 0.0)) {
+            throw new IllegalArgumentException("Max velocity must be positive, got " + maxVelocity);
+        }
+        if (!(maxAcceleration > 0.0)) {
+            throw new IllegalArgumentException("Max acceleration must be positive, got " + maxAcceleration);
+        }
+        this.mass = dynamics.getMass();
+        this.moi = dynamics.getMoi();
+        this.angularDrag = dynamics.getAngularDrag();
+        this.wheelRadius = dynamics.getWheelRadius();
+        this.effectiveWheelbaseRadius = dynamics.getEffectiveWheelbaseRadius();
+        this.leftTransmission = dynamics.getLeftTransmission();
+        this.rightTransmission = dynamics.getRightTransmission();
+        this.maxVoltage = maxVoltage;
+        this.maxVelocity = maxVelocity;
+        this.maxAcceleration = maxAcceleration;
+    }
+
+    /**
+     * @return The largest voltage magnitude which may be applied to either side of the drive, in V
+     */
+    public double getMaxVoltage() {
+        return maxVoltage;
+    }
+
+    /**
+     * @return The additional limit on the chassis speed, in m/s (which may be infinite)
+     */
+    public double getMaxVelocity() {
+        return maxVelocity;
+    }
+
+    /**
+     * @return The additional limit on the magnitude of the chassis acceleration, in m/s^2 (which may be infinite)
+     */
+    public double getMaxAcceleration() {
+        return maxAcceleration;
+    }
+
+    /**
+     * Parameterizes a path which starts and ends at rest, driving forwards.
+     * @param points The points of the path, for example from TrajectoryGenerator.splinePointsFromSplines
+     * @return The time parameterized trajectory
+     */
+    public Trajectory parameterize(List<PoseWithCurvature> points) {
+        return parameterize(points, 0.0, 0.0, false);
+    }
+
+    /**
+     * Parameterizes a path.
+     * @param points The points of the path, for example from TrajectoryGenerator.splinePointsFromSplines.  When
+     *               reversed, the poses are the poses of the robot (facing away from the direction of travel), as
+     *               WPILib produces them.
+     * @param startVelocity The speed at the start of the path, in m/s
+     * @param endVelocity The speed at the end of the path, in m/s
+     * @param reversed Whether the robot drives backwards along the path
+     * @return The time parameterized trajectory
+     */
+    public Trajectory parameterize(List<PoseWithCurvature> points, double startVelocity, double endVelocity,
+                                   boolean reversed) {
+        int size = points.size();
+        if (size == 0) {
+            throw new IllegalArgumentException("Path has no points");
+        }
+        if (startVelocity < 0.0 || endVelocity < 0.0) {
+            throw new IllegalArgumentException("Start and end velocities must not be negative (use reversed instead)");
+        }
+
+        //Voltage of each side at each point is c * a + e * v + g, and its magnitude must be at most limit.  The
+        //dynamics are symmetric, so a reversed path has the same bounds on speed and acceleration magnitude.
+        double[] leftC = new double[size];
+        double[] leftE = new double[size];
+        double[] leftG = new double[size];
+        double[] leftLimit = new double[size];
+        double[] rightC = new double[size];
+        double[] rightE = new double[size];
+        double[] rightG = new double[size];
+        double[] rightLimit = new double[size];
+        double[] distances = new double[size]; //Straight line distance from the previous point to each point
+        double[] velocities = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            PoseWithCurvature point = points.get(i);
+            double curvature = point.curvatureRadPerMeter;
+            sideModel(curvature, -1.0, leftTransmission, leftC, leftE, leftG, leftLimit, i);
+            sideModel(curvature, 1.0, rightTransmission, rightC, rightE, rightG, rightLimit, i);
+            if (i > 0) {
+                distances[i] = point.poseMeters.getTranslation().getDistance(points.get(i - 1).poseMeters.getTranslation());
+            }
+            velocities[i] = Math.min(maxVelocity, Math.min(
+                    velocityLimit(leftC[i], leftE[i], leftG[i], leftLimit[i], rightC[i], rightE[i], rightG[i], rightLimit[i]),
+                    velocityLimit(rightC[i], rightE[i], rightG[i], rightLimit[i], leftC[i], leftE[i], leftG[i], leftLimit[i])
+            ));
+        }
+
+        //Forward pass, limited by the largest acceleration at both ends of each segment
+        velocities[0] = Math.min(velocities[0], startVelocity);
+        for (int i = 1; i < size; i++) {
+            double ds = distances[i];
+            double previous = velocities[i - 1];
+            double acceleration = accelerationBound(i - 1, previous, true,
+                    leftC, leftE, leftG, leftLimit, rightC, rightE, rightG, rightLimit);
+            boolean feasible = false;
+            for (int refinement = 0; refinement < MAX_REFINEMENTS && !feasible; refinement++) {
+                double velocity = Math.min(velocities[i], reachable(previous, acceleration, ds));
+                double farAcceleration = accelerationBound(i, velocity, true,
+                        leftC, leftE, leftG, leftLimit, rightC, rightE, rightG, rightLimit);
+                velocities[i] = velocity;
+                feasible = farAcceleration >= segmentAcceleration(previous, velocity, ds) - EPS;
+                acceleration = Math.min(acceleration, farAcceleration);
+            }
+            if (!feasible) {
+                //Out of refinements, so use the smallest bound found at either end rather than accepting a violation
+                velocities[i] = Math.min(velocities[i], reachable(previous, acceleration, ds));
+            }
+        }
+
+        //Backward pass, limited by the largest deceleration at both ends of each segment
+        velocities[size - 1] = Math.min(velocities[size - 1], endVelocity);
+        for (int i = size - 2; i >= 0; i--) {
+            double ds = distances[i + 1];
+            double next = velocities[i + 1];
+            double deceleration = -accelerationBound(i + 1, next, false,
+                    leftC, leftE, leftG, leftLimit, rightC, rightE, rightG, rightLimit);
+            boolean feasible = false;
+            for (int refinement = 0; refinement < MAX_REFINEMENTS && !feasible; refinement++) {
+                double velocity = Math.min(velocities[i], reachable(next, deceleration, ds));
+                double farDeceleration = -accelerationBound(i, velocity, false,
+                        leftC, leftE, leftG, leftLimit, rightC, rightE, rightG, rightLimit);
+                velocities[i] = velocity;
+                feasible = farDeceleration >= segmentAcceleration(next, velocity, ds) - EPS;
+                deceleration = Math.min(deceleration, farDeceleration);
+            }
+            if (!feasible) {
+                //Out of refinements, so use the smallest bound found at either end rather than accepting a violation
+                velocities[i] = Math.min(velocities[i], reachable(next, deceleration, ds));
+            }
+        }
+
+        //Integrate the times, in the same way as WPILib's TrajectoryParameterizer
+        double direction = reversed ? -1.0 : 1.0;
+        List<Trajectory.State> states = new ArrayList<>(size);
+        double time = 0.0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                double ds = distances[i];
+                double acceleration = segmentAcceleration(velocities[i - 1], velocities[i], ds);
+                states.get(i - 1).accelerationMetersPerSecondSq = direction * acceleration;
+                if (Math.abs(acceleration) > 1e-6) {
+                    time += (velocities[i] - velocities[i - 1]) / acceleration;
+                } else if (Math.abs(velocities[i]) > 1e-6) {
+                    time += ds / velocities[i];
+                } else if (ds > EPS) {
+                    throw new IllegalArgumentException("Path cannot be followed: the drivetrain stops at point " + i);
+                }
+            }
+            Pose2d pose = points.get(i).poseMeters;
+            states.add(new Trajectory.State(time, direction * velocities[i], 0.0, pose, points.get(i).curvatureRadPerMeter));
+        }
+        return new Trajectory(states);
+    }
+
+    //Writes the voltage model of one side of the drive (side is -1 for left, 1 for right) at a curvature, for forward
+    //motion.  The wheel speed is v * (1 + side * R * k) / r, so its direction (and so the direction of friction) is
+    //fixed along the point for any forward speed.
+    private void sideModel(double curvature, double side, DCMotorDynamics transmission,
+                           double[] c, double[] e, double[] g, double[] limit, int i) {
+        double torquePerVolt = transmission.getTorquePerVolt();
+        double turn = 1.0 + side * effectiveWheelbaseRadius * curvature;
+        c[i] = wheelRadius / 2.0 * (mass + side * curvature * moi / effectiveWheelbaseRadius) / torquePerVolt;
+        e[i] = wheelRadius / 2.0 * (side * curvature * angularDrag / effectiveWheelbaseRadius) / torquePerVolt;
+        if (Math.abs(turn) > EPS) {
+            e[i] += turn / (wheelRadius * transmission.getSpeedPerVolt());
+            g[i] = Math.copySign(transmission.getFrictionVoltage(), turn);
+            limit[i] = maxVoltage;
+        } else {
+            //The wheel is pivoted about, so friction always opposes the torque
+            g[i] = 0.0;
+            limit[i] = maxVoltage - transmission.getFrictionVoltage();
+        }
+    }
+
+    //Finds the largest speed where the acceleration bounds of one side (and the acceleration limit) overlap those of
+    //the other side.  Called once with each side as "this" side, so every pair of bounds is checked.
+    private double velocityLimit(double c, double e, double g, double limit,
+                                 double otherC, double otherE, double otherG, double otherLimit) {
+        double result = Double.POSITIVE_INFINITY;
+        if (Math.abs(c) <= EPS) {
+            //The voltage does not depend on the acceleration, so it directly limits the speed
+            if (e > EPS) {
+                result = (limit - g) / e;
+            } else if (e < -EPS) {
+                result = (limit + g) / -e;
+            }
+            return Math.max(0.0, result);
+        }
+
+        //Acceleration bounds of this side are lower + slope * v and upper + slope * v
+        double slope = -e / c;
+        double lower = (c > 0.0 ? -limit - g : limit - g) / c;
+        double upper = (c > 0.0 ? limit - g : -limit - g) / c;
+
+        //Against the acceleration limit
+        result = Math.min(result, upperBound(-slope, upper + maxAcceleration));
+        result = Math.min(result, upperBound(slope, maxAcceleration - lower));
+
+        //Against the other side
+        if (Math.abs(otherC) > EPS) {
+            double otherSlope = -otherE / otherC;
+            double otherUpper = (otherC > 0.0 ? otherLimit - otherG : -otherLimit - otherG) / otherC;
+            result = Math.min(result, upperBound(slope - otherSlope, otherUpper - lower));
+        }
+        return Math.max(0.0, result);
+    }
+
+    //Solves coefficient * v <= rhs for an upper bound on v, or returns infinity if it does not give one
+    private static double upperBound(double coefficient, double rhs) {
+        return coefficient > EPS ? rhs / coefficient : Double.POSITIVE_INFINITY;
+    }
+
+    //Finds the largest (or smallest) acceleration which keeps both sides within their voltage limit at a point and speed
+    private double accelerationBound(int i, double velocity, boolean max,
+                                     double[] leftC, double[] leftE, double[] leftG, double[] leftLimit,
+                                     double[] rightC, double[] rightE, double[] rightG, double[] rightLimit) {
+        double left = sideAccelerationBound(leftC[i], leftE[i], leftG[i], leftLimit[i], velocity, max);
+        double right = sideAccelerationBound(rightC[i], rightE[i], rightG[i], rightLimit[i], velocity, max);
+        return max ? Math.min(maxAcceleration, Math.min(left, right)) : Math.max(-maxAcceleration, Math.max(left, right));
+    }
+
+    private static double sideAccelerationBound(double c, double e, double g, double limit, double velocity, boolean max) {
+        if (Math.abs(c) <= EPS) {
+            return max ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        }
+        if (velocity <= EPS) {
+            //At rest, friction opposes the torque rather than the motion (as in DCMotorDynamics.inverseDynamics)
+            limit -= Math.abs(g);
+            g = 0.0;
+        }
+        double voltage = (max == c > 0.0) ? limit : -limit;
+        return (voltage - g - e * velocity) / c;
+    }
+
+    //The speed reached after a distance at a constant acceleration, or zero if it stops first
+    private static double reachable(double velocity, double acceleration, double distance) {
+        return Math.sqrt(Math.max(0.0, velocity * velocity + 2.0 * acceleration * distance));
+    }
+
+    private static double segmentAcceleration(double start, double end, double distance) {
+        return distance > EPS ? (end * end - start * start) / (2.0 * distance) : 0.0;
+    }
+}
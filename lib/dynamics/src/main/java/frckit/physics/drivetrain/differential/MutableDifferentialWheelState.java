@@ -0,0 +1,87 @@
+package frckit.physics.drivetrain.differential;
+
+/**
+ * A mutable version of DifferentialWheelState.  This is intended to be owned by the caller and passed as an output to
+ * methods which produce a wheel state, so that hot code paths can avoid allocating a new DifferentialWheelState every
+ * loop cycle.
+ */
+public class MutableDifferentialWheelState {
+    private double leftVelocity;
+    private double rightVelocity;
+    private double leftAcceleration;
+    private double rightAcceleration;
+    private double leftVoltage;
+    private double rightVoltage;
+
+    /**
+     * Creates a new MutableDifferentialWheelState with every value set to zero
+     */
+    public MutableDifferentialWheelState() {
+    }
+
+    public double getLeftVelocity() {
+        return leftVelocity;
+    }
+
+    public double getRightVelocity() {
+        return rightVelocity;
+    }
+
+    public double getLeftAcceleration() {
+        return leftAcceleration;
+    }
+
+    public double getRightAcceleration() {
+        return rightAcceleration;
+    }
+
+    public double getLeftVoltage() {
+        return leftVoltage;
+    }
+
+    public double getRightVoltage() {
+        return rightVoltage;
+    }
+
+    /**
+     * Sets every value of the state
+     * @return This state
+     */
+    public MutableDifferentialWheelState set(double leftVelocity, double rightVelocity,
+                                             double leftAcceleration, double rightAcceleration,
+                                             double leftVoltage, double rightVoltage) {
+        this.leftVelocity = leftVelocity;
+        this.rightVelocity = rightVelocity;
+        this.leftAcceleration = leftAcceleration;
+        this.rightAcceleration = rightAcceleration;
+        this.leftVoltage = leftVoltage;
+        this.rightVoltage = rightVoltage;
+        return this;
+    }
+
+    /**
+     * Copies the values of an immutable wheel state into this state
+     * @param state The state to copy
+     * @return This state
+     */
+    public MutableDifferentialWheelState set(DifferentialWheelState state) {
+        return set(state.getLeftVelocity(), state.getRightVelocity(),
+                state.getLeftAcceleration(), state.getRightAcceleration(),
+                state.getLeftVoltage(), state.getRightVoltage());
+    }
+
+    /**
+     * @return A new immutable DifferentialWheelState with the same values as this state
+     */
+    public DifferentialWheelState toDifferentialWheelState() {
+        return new DifferentialWheelState(leftVelocity, rightVelocity, leftAcceleration, rightAcceleration,
+                leftVoltage, rightVoltage);
+    }
+
+    @Override
+    public String toString() {
+        return "MutableDifferentialWheelState(left: " + leftVelocity + " rad/s, " + leftAcceleration + " rad/s^2, "
+                + leftVoltage + " V, right: " + rightVelocity + " rad/s, " + rightAcceleration + " rad/s^2, "
+                + rightVoltage + " V)";
+    }
+}
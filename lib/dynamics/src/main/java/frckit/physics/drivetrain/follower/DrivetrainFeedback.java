@@ -1,7 +1,9 @@
 package frckit.physics.drivetrain.follower;
 
 import edu.wpi.first.math.geometry.Pose2d;
+import frckit.physics.state.MutableRigidBodyState2d;
 import frckit.physics.state.RigidBodyState2d;
+import frckit.util.MutablePose2d;
 
 /**
  * Interface for drivetrain trajectory followers.  Followers use the positional error, target state, and previous state
@@ -10,4 +12,22 @@ import frckit.physics.state.RigidBodyState2d;
  */
 public interface DrivetrainFeedback {
     RigidBodyState2d calculate(double dt, Pose2d error, RigidBodyState2d targetState, RigidBodyState2d lastUpdateState);
+
+    /**
+     * Calculates the updated state, writing the result into a caller owned state.  The default implementation converts
+     * the arguments and calls {@link #calculate(double, Pose2d, RigidBodyState2d, RigidBodyState2d)}, so it allocates.
+     * Implementations should override this to avoid allocating, so that they can be used in an allocation free control
+     * loop.
+     * @param dt The time since the last update, in seconds
+     * @param error The pose of the target relative to the current pose
+     * @param targetState The target (trajectory) state
+     * @param lastUpdateState The state produced by the last update
+     * @param out The state to write the updated state into.  This may be the same object as targetState or
+     *            lastUpdateState.
+     * @return The state which was passed in
+     */
+    default MutableRigidBodyState2d calculate(double dt, MutablePose2d error, MutableRigidBodyState2d targetState,
+                                              MutableRigidBodyState2d lastUpdateState, MutableRigidBodyState2d out) {
+        return out.set(calculate(dt, error.toPose2d(), targetState.toRigidBodyState2d(), lastUpdateState.toRigidBodyState2d()));
+    }
 }
@@ -2,29 +2,42 @@ package frckit.physics.drivetrain.follower;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.trajectory.Trajectory;
+import frckit.physics.state.MutableRigidBodyState2d;
 import frckit.physics.state.RigidBodyState2d;
 import frckit.util.GeomUtil;
+import frckit.util.MutablePose2d;
 
 public class DrivetrainTrajectoryFollower {
     private final Trajectory trajectory;
+    private final TrajectorySampler sampler;
     private final DrivetrainFeedback feedback;
 
     private double startTimestamp = -1.0;
     private double lastTimestamp = -1.0;
 
-    private RigidBodyState2d setpoint = RigidBodyState2d.ZERO;
+    private final MutableRigidBodyState2d setpoint = new MutableRigidBodyState2d();
     private boolean done = false;
-    private RigidBodyState2d targetState = RigidBodyState2d.ZERO;
+    private final MutableRigidBodyState2d targetState = new MutableRigidBodyState2d();
 
-    private Pose2d error = GeomUtil.POSE_ZERO;
+    private final MutablePose2d error = new MutablePose2d();
 
     public DrivetrainTrajectoryFollower(Trajectory trajectory, DrivetrainFeedback feedback) {
         this.trajectory = trajectory;
+        this.sampler = new TrajectorySampler(trajectory);
         this.feedback = feedback;
     }
 
     public RigidBodyState2d getSetpoint() {
-        return setpoint;
+        return setpoint.toRigidBodyState2d();
+    }
+
+    /**
+     * Copies the setpoint from the last update
+     * @param out The state to write the setpoint into
+     * @return The state which was passed in
+     */
+    public MutableRigidBodyState2d getSetpoint(MutableRigidBodyState2d out) {
+        return out.set(setpoint);
     }
 
     public boolean isDone() {
@@ -32,15 +45,77 @@ public class DrivetrainTrajectoryFollower {
     }
 
     public Pose2d getError() {
-        return error;
+        return error.toPose2d();
+    }
+
+    /**
+     * Copies the error from the last update
+     * @param out The pose to write the error into
+     * @return The pose which was passed in
+     */
+    public MutablePose2d getError(MutablePose2d out) {
+        return out.set(error);
+    }
+
+    /**
+     * Restarts the follower, so that the next update starts following the trajectory from the beginning again.
+     */
+    public void reset() {
+        startTimestamp = -1.0;
+        lastTimestamp = -1.0;
+        setpoint.set(0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+        targetState.set(0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+        error.set(0.0, 0.0, 0.0);
+        done = false;
     }
 
     public RigidBodyState2d update(double timestamp, Pose2d currentPoseMeters) {
+        if (step(timestamp, currentPoseMeters.getX(), currentPoseMeters.getY(), currentPoseMeters.getRotation().getRadians())) {
+            return targetState.toRigidBodyState2d();
+        } else {
+            return RigidBodyState2d.ZERO;
+        }
+    }
+
+    /**
+     * Updates the follower, writing the target state into a caller owned state.  This does not allocate, as long as
+     * the feedback overrides {@link DrivetrainFeedback#calculate(double, MutablePose2d, MutableRigidBodyState2d,
+     * MutableRigidBodyState2d, MutableRigidBodyState2d)}.
+     * @param timestamp The current timestamp, in seconds
+     * @param currentPoseMeters The current pose of the drivetrain
+     * @param out The state to write the target state into.  This is zero on the first update and once the follower is
+     *            done.
+     * @return The state which was passed in
+     */
+    public MutableRigidBodyState2d update(double timestamp, MutablePose2d currentPoseMeters, MutableRigidBodyState2d out) {
+        return update(timestamp, currentPoseMeters.getX(), currentPoseMeters.getY(), currentPoseMeters.getTheta(), out);
+    }
+
+    /**
+     * Updates the follower with a pose given as primitive values, writing the target state into a caller owned state.
+     * @param timestamp The current timestamp, in seconds
+     * @param x The x coordinate of the current pose, in meters
+     * @param y The y coordinate of the current pose, in meters
+     * @param theta The heading of the current pose, in radians
+     * @param out The state to write the target state into
+     * @return The state which was passed in
+     * @see #update(double, MutablePose2d, MutableRigidBodyState2d)
+     */
+    public MutableRigidBodyState2d update(double timestamp, double x, double y, double theta, MutableRigidBodyState2d out) {
+        if (step(timestamp, x, y, theta)) {
+            return out.set(targetState);
+        } else {
+            return out.set(0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+        }
+    }
+
+    //Returns true if the target state was updated, or false if the output should be zero
+    private boolean step(double timestamp, double x, double y, double theta) {
         if (lastTimestamp < 0.0 || startTimestamp < 0.0) {
             //This is the first run, set last timestamp and return a zero output
             lastTimestamp = timestamp;
             startTimestamp = timestamp;
-            return RigidBodyState2d.ZERO;
+            return false;
         }
 
 
@@ -49,27 +124,27 @@ public class DrivetrainTrajectoryFollower {
         lastTimestamp = timestamp;
 
         double trajectoryTime = timestamp - startTimestamp;
-        Trajectory.State trajectoryState = trajectory.sample(trajectoryTime);
+        sampler.sample(trajectoryTime);
 
         if (!done) {
-            setpoint = new RigidBodyState2d( //TODO this does not do anything with acceleration or y velocity.  This will NOT work with swerve!
-                    trajectoryState.velocityMetersPerSecond,
+            setpoint.set( //TODO this does not do anything with acceleration or y velocity.  This will NOT work with swerve!
+                    sampler.getVelocity(),
                     0.0,
-                    trajectoryState.velocityMetersPerSecond * trajectoryState.curvatureRadPerMeter,
+                    sampler.getVelocity() * sampler.getCurvature(),
                     0.0, 0.0, 0.0
             );
 
-            error = trajectoryState.poseMeters.relativeTo(currentPoseMeters);
+            GeomUtil.relativeTo(sampler.getX(), sampler.getY(), sampler.getTheta(), x, y, theta, error);
 
             //Do feedback
-            targetState = feedback.calculate(dt, error, setpoint, targetState); //Pass back the previous targetState
+            feedback.calculate(dt, error, setpoint, targetState, targetState); //Pass back the previous targetState
 
             //Check if we are done
             done = trajectoryTime >= trajectory.getTotalTimeSeconds();
 
-            return targetState;
+            return true;
         } else {
-            return RigidBodyState2d.ZERO;
+            return false;
         }
     }
 }
@@ -1,7 +1,9 @@
 package frckit.physics.drivetrain.follower;
 
 import edu.wpi.first.math.geometry.Pose2d;
+import frckit.physics.state.MutableRigidBodyState2d;
 import frckit.physics.state.RigidBodyState2d;
+import frckit.util.MutablePose2d;
 
 /**
  * Implements "no feedback", which simply outputs the target (trajectory) state as the updated state.  This is useful
@@ -12,4 +14,10 @@ public class NoFeedback implements DrivetrainFeedback {
     public RigidBodyState2d calculate(double dt, Pose2d error, RigidBodyState2d targetState, RigidBodyState2d lastUpdateState) {
         return targetState;
     }
+
+    @Override
+    public MutableRigidBodyState2d calculate(double dt, MutablePose2d error, MutableRigidBodyState2d targetState,
+                                             MutableRigidBodyState2d lastUpdateState, MutableRigidBodyState2d out) {
+        return out.set(targetState);
+    }
 }
@@ -1,8 +1,10 @@
 package frckit.physics.drivetrain.follower;
 
 import edu.wpi.first.math.geometry.Pose2d;
+import frckit.physics.state.MutableRigidBodyState2d;
 import frckit.physics.state.RigidBodyState2d;
 import frckit.util.Epsilon;
+import frckit.util.MutablePose2d;
 
 /**
  * Implements nonlinear feedback for a non-holonomic drivetrain (a differential drivetrain is an example of this).
@@ -24,22 +26,37 @@ public class NonholonomicNonlinearFeedback implements DrivetrainFeedback {
 
     @Override
     public RigidBodyState2d calculate(double dt, Pose2d error, RigidBodyState2d targetState, RigidBodyState2d lastUpdateState) {
-        //Unpack state
-        double v = targetState.getVx();
-        double omega = targetState.getOmega();
-        double angleError = error.getRotation().getRadians();
-        double sinc = Epsilon.equals(angleError, 0.0, 1e-9) ? 1.0 : error.getRotation().getSin() / angleError; //sin(theta) / theta = sinc(theta)
+        MutableRigidBodyState2d out = new MutableRigidBodyState2d();
+        calculate(dt, error.getX(), error.getY(), error.getRotation().getRadians(),
+                error.getRotation().getCos(), error.getRotation().getSin(),
+                targetState.getVx(), targetState.getOmega(), lastUpdateState.getVx(), lastUpdateState.getOmega(), out);
+        return out.toRigidBodyState2d();
+    }
+
+    @Override
+    public MutableRigidBodyState2d calculate(double dt, MutablePose2d error, MutableRigidBodyState2d targetState,
+                                             MutableRigidBodyState2d lastUpdateState, MutableRigidBodyState2d out) {
+        double angleError = error.getTheta();
+        return calculate(dt, error.getX(), error.getY(), angleError, Math.cos(angleError), Math.sin(angleError),
+                targetState.getVx(), targetState.getOmega(), lastUpdateState.getVx(), lastUpdateState.getOmega(), out);
+    }
+
+    //Everything is unpacked before out is written, so out may be the same object as the target or last state
+    private MutableRigidBodyState2d calculate(double dt, double errorX, double errorY, double angleError,
+                                              double cosError, double sinError, double v, double omega,
+                                              double lastV, double lastOmega, MutableRigidBodyState2d out) {
+        double sinc = Epsilon.equals(angleError, 0.0, 1e-9) ? 1.0 : sinError / angleError; //sin(theta) / theta = sinc(theta)
 
         //Ramsete
         double k = 2.0 * kZeta * Math.sqrt(kBeta * v * v + omega * omega); //Gain parameter
 
-        double adjustedV = v * error.getRotation().getCos() + k * error.getTranslation().getX();
-        double adjustedOmega = omega + k * angleError + v * kBeta * sinc * error.getTranslation().getY();
+        double adjustedV = v * cosError + k * errorX;
+        double adjustedOmega = omega + k * angleError + v * kBeta * sinc * errorY;
 
-        double a = Epsilon.equals(dt, 0.0) ? 0.0 : (adjustedV - lastUpdateState.getVx()) / dt;
-        double alpha = Epsilon.equals(dt, 0.0) ? 0.0 : (adjustedOmega - lastUpdateState.getOmega()) / dt;
+        double a = Epsilon.equals(dt, 0.0) ? 0.0 : (adjustedV - lastV) / dt;
+        double alpha = Epsilon.equals(dt, 0.0) ? 0.0 : (adjustedOmega - lastOmega) / dt;
 
         //Non-holonomic does not have any velocity or acceleration in the y direction (since this would make it holonomic!)
-        return new RigidBodyState2d(adjustedV, 0.0, adjustedOmega, a, 0.0, alpha);
+        return out.set(adjustedV, 0.0, adjustedOmega, a, 0.0, alpha);
     }
 }
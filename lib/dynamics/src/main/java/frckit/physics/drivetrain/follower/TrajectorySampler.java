@@ -0,0 +1,249 @@
+package frckit.physics.drivetrain.follower;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import frckit.util.GeomUtil;
+import frckit.util.MutablePose2d;
+
+import java.util.List;
+
+/**
+ * Samples a trajectory at increasing times, producing the same results as {@link Trajectory#sample(double)} without a
+ * binary search or any allocation per sample.
+ *
+ * The states of the trajectory are copied into primitive arrays when the sampler is created.  The sampler remembers
+ * the segment of the last sample, and walks forwards from it, so sampling at increasing times (as a follower does) is
+ * amortized constant time.  If the time jumps backwards, it falls back to a binary search.  The result of the last
+ * sample is stored in the sampler, and is read with its getters.
+ */
+public class TrajectorySampler {
+    private final int size;
+    private final double[] times;
+    private final double[] velocities;
+    private final double[] accelerations;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] thetas;
+    private final double[] curvatures;
+    private final double[] segmentLengths; //Straight line distance from the previous state to each state
+
+    private int cursor = 1; //Index of the end state of the last sampled segment
+
+    private double time;
+    private double velocity;
+    private double acceleration;
+    private double curvature;
+    private final MutablePose2d pose = new MutablePose2d();
+
+    /**
+     * Creates a new TrajectorySampler.  The trajectory must not be modified after the sampler is created.
+     * @param trajectory The trajectory to sample, which must have at least one state
+     */
+    public TrajectorySampler(Trajectory trajectory) {
+        List<Trajectory.State> states = trajectory.getStates();
+        size = states.size();
+        if (size == 0) {
+            throw new IllegalArgumentException("Trajectory has no states");
+        }
+        times = new double[size];
+        velocities = new double[size];
+        accelerations = new double[size];
+        xs = new double[size];
+        ys = new double[size];
+        thetas = new double[size];
+        curvatures = new double[size];
+        segmentLengths = new double[size];
+        for (int i = 0; i < size; i++) {
+            Trajectory.State state = states.get(i);
+            Pose2d statePose = state.poseMeters;
+            times[i] = state.timeSeconds;
+            velocities[i] = state.velocityMetersPerSecond;
+            accelerations[i] = state.accelerationMetersPerSecondSq;
+            xs[i] = statePose.getX();
+            ys[i] = statePose.getY();
+            thetas[i] = statePose.getRotation().getRadians();
+            curvatures[i] = state.curvatureRadPerMeter;
+            if (i > 0) {
+                segmentLengths[i] = statePose.getTranslation().getDistance(states.get(i - 1).poseMeters.getTranslation());
+            }
+        }
+        sample(times[0]);
+    }
+
+    /**
+     * Creates a new TrajectorySampler for the same trajectory as another sampler, sharing its copy of the states.  A
+     * sampler is not thread safe, but samplers created this way can sample the trajectory from different threads.
+     * @param other The sampler to share the states of
+     */
+    public TrajectorySampler(TrajectorySampler other) {
+        size = other.size;
+        times = other.times;
+        velocities = other.velocities;
+        accelerations = other.accelerations;
+        xs = other.xs;
+        ys = other.ys;
+        thetas = other.thetas;
+        curvatures = other.curvatures;
+        segmentLengths = other.segmentLengths;
+        sample(times[0]);
+    }
+
+    /**
+     * @return The total time of the trajectory, in seconds
+     */
+    public double getTotalTime() {
+        return times[size - 1];
+    }
+
+    /**
+     * Samples the trajectory at the given time, storing the result in this sampler.  This does not allocate.
+     * @param t The time to sample at, in seconds
+     * @return This sampler
+     */
+    public TrajectorySampler sample(double t) {
+        if (t <= times[0]) {
+            return copyState(0);
+        }
+        if (t >= times[size - 1]) {
+            return copyState(size - 1);
+        }
+
+        //Find the first state at or after the time (as Trajectory.sample does)
+        if (times[cursor - 1] < t) {
+            //Walk forwards from the last segment
+            while (times[cursor] < t) {
+                cursor++;
+            }
+        } else {
+            cursor = search(t);
+        }
+
+        int end = cursor;
+        int start = end - 1;
+        if (Math.abs(times[end] - times[start]) < 1e-9) {
+            return copyState(end);
+        }
+        interpolate(start, end, (t - times[start]) / (times[end] - times[start]));
+        return this;
+    }
+
+    /**
+     * Samples the trajectory at the given time, finding its segment with a binary search rather than by walking
+     * forwards from the last sample.  This is faster than {@link #sample(double)} for the first of a run of samples
+     * which starts far from the last one.  This does not allocate.
+     * @param t The time to sample at, in seconds
+     * @return This sampler
+     */
+    public TrajectorySampler seek(double t) {
+        cursor = search(t);
+        return sample(t);
+    }
+
+    /**
+     * @return The time of the last sample, in seconds
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return The velocity at the last sample, in m/s
+     */
+    public double getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * @return The acceleration at the last sample, in m/s^2
+     */
+    public double getAcceleration() {
+        return acceleration;
+    }
+
+    /**
+     * @return The curvature at the last sample, in rad/m
+     */
+    public double getCurvature() {
+        return curvature;
+    }
+
+    /**
+     * @return The x coordinate of the pose at the last sample, in meters
+     */
+    public double getX() {
+        return pose.getX();
+    }
+
+    /**
+     * @return The y coordinate of the pose at the last sample, in meters
+     */
+    public double getY() {
+        return pose.getY();
+    }
+
+    /**
+     * @return The heading of the pose at the last sample, in radians
+     */
+    public double getTheta() {
+        return pose.getTheta();
+    }
+
+    /**
+     * Copies the pose at the last sample
+     * @param out The pose to write the pose into
+     * @return The pose which was passed in
+     */
+    public MutablePose2d getPose(MutablePose2d out) {
+        return out.set(pose);
+    }
+
+    //Same as Trajectory.State.interpolate
+    private void interpolate(int start, int end, double i) {
+        double newTime = lerp(times[start], times[end], i);
+        double deltaT = newTime - times[start];
+        double startVelocity = velocities[start];
+        double startAcceleration = accelerations[start];
+
+        boolean reversing = startVelocity < 0 || Math.abs(startVelocity) < 1e-9 && startAcceleration < 0;
+        double distance = (startVelocity * deltaT + 0.5 * startAcceleration * Math.pow(deltaT, 2)) * (reversing ? -1.0 : 1.0);
+        double fraction = distance / segmentLengths[end];
+
+        time = newTime;
+        velocity = startVelocity + startAcceleration * deltaT;
+        acceleration = startAcceleration;
+        curvature = lerp(curvatures[start], curvatures[end], fraction);
+
+        //Pose lerp is start.plus(end.minus(start).times(fraction))
+        GeomUtil.relativeTo(xs[end], ys[end], thetas[end], xs[start], ys[start], thetas[start], pose);
+        GeomUtil.compose(xs[start], ys[start], thetas[start],
+                pose.getX() * fraction, pose.getY() * fraction, pose.getTheta() * fraction, pose);
+    }
+
+    private TrajectorySampler copyState(int index) {
+        time = times[index];
+        velocity = velocities[index];
+        acceleration = accelerations[index];
+        curvature = curvatures[index];
+        pose.set(xs[index], ys[index], thetas[index]);
+        return this;
+    }
+
+    //Finds the first state at or after the time, in the same way as Trajectory.sample
+    private int search(double t) {
+        int low = 1;
+        int high = size - 1;
+        while (low != high) {
+            int mid = (low + high) / 2;
+            if (times[mid] < t) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static double lerp(double start, double end, double t) {
+        return start + (end - start) * t;
+    }
+}
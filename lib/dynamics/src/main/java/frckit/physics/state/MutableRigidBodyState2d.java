@@ -0,0 +1,107 @@
+package frckit.physics.state;
+
+/**
+ * A mutable version of RigidBodyState2d.  This is intended to be owned by the caller and passed as an output to methods
+ * which produce a rigid body state, so that hot code paths can avoid allocating a new RigidBodyState2d every loop cycle.
+ */
+public class MutableRigidBodyState2d {
+    private double vx;
+    private double vy;
+    private double omega;
+    private double ax;
+    private double ay;
+    private double alpha;
+
+    /**
+     * Creates a new MutableRigidBodyState2d with every value set to zero
+     */
+    public MutableRigidBodyState2d() {
+    }
+
+    /**
+     * @return The x component of the linear velocity of the body
+     */
+    public double getVx() {
+        return vx;
+    }
+
+    /**
+     * @return The y component of the linear velocity of the body
+     */
+    public double getVy() {
+        return vy;
+    }
+
+    /**
+     * @return The angular velocity of the body
+     */
+    public double getOmega() {
+        return omega;
+    }
+
+    /**
+     * @return The x component of the linear acceleration of the body
+     */
+    public double getAx() {
+        return ax;
+    }
+
+    /**
+     * @return The y component of the linear acceleration of the body
+     */
+    public double getAy() {
+        return ay;
+    }
+
+    /**
+     * @return The angular acceleration of the body
+     */
+    public double getAlpha() {
+        return alpha;
+    }
+
+    /**
+     * Sets every value of the state
+     * @return This state
+     */
+    public MutableRigidBodyState2d set(double vx, double vy, double omega, double ax, double ay, double alpha) {
+        this.vx = vx;
+        this.vy = vy;
+        this.omega = omega;
+        this.ax = ax;
+        this.ay = ay;
+        this.alpha = alpha;
+        return this;
+    }
+
+    /**
+     * Copies the values of an immutable state into this state
+     * @param state The state to copy
+     * @return This state
+     */
+    public MutableRigidBodyState2d set(RigidBodyState2d state) {
+        return set(state.getVx(), state.getVy(), state.getOmega(), state.getAx(), state.getAy(), state.getAlpha());
+    }
+
+    /**
+     * Copies the values of another mutable state into this state
+     * @param state The state to copy
+     * @return This state
+     */
+    public MutableRigidBodyState2d set(MutableRigidBodyState2d state) {
+        return set(state.vx, state.vy, state.omega, state.ax, state.ay, state.alpha);
+    }
+
+    /**
+     * @return A new immutable RigidBodyState2d with the same values as this state
+     */
+    public RigidBodyState2d toRigidBodyState2d() {
+        return new RigidBodyState2d(vx, vy, omega, ax, ay, alpha);
+    }
+
+    @Override
+    public String toString() {
+        return "MutableRigidBodyState2d(v: " + vx + ", " + vy + ", omega: " + omega
+                + ", a: " + ax + ", " + ay + ", alpha: " + alpha + ")";
+    }
+}
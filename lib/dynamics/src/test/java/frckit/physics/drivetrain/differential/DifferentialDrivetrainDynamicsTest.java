@@ -0,0 +1,54 @@
+package frckit.physics.drivetrain.differential;
+
+import frckit.physics.state.MutableRigidBodyState2d;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DifferentialDrivetrainDynamicsTest {
+    private static final double TOLERANCE = 1e-9;
+
+    private final DifferentialDrivetrainDynamics dynamics = DifferentialDrivetrainDynamics.fromHybridCharacterization(
+            60.0, 6.0, 0.5, 0.0762, 0.35,
+            0.2, 0.23, 3.47,
+            0.25, 0.21, 3.1
+    );
+
+    @Test
+    public void forwardDynamicsInvertsInverseDynamics() {
+        Random random = new Random(0);
+        MutableDifferentialWheelState command = new MutableDifferentialWheelState();
+        MutableRigidBodyState2d result = new MutableRigidBodyState2d();
+        for (int i = 0; i < 10000; i++) {
+            double v = random.nextDouble() * 8.0 - 4.0;
+            double omega = random.nextDouble() * 8.0 - 4.0;
+            double a = random.nextDouble() * 6.0 - 3.0;
+            double alpha = random.nextDouble() * 6.0 - 3.0;
+
+            dynamics.inverseDynamics(v, omega, a, alpha, command);
+            dynamics.forwardDynamics(v, omega, command.getLeftVoltage(), command.getRightVoltage(), result);
+
+            assertEquals(v, result.getVx(), 0.0);
+            assertEquals(omega, result.getOmega(), 0.0);
+            assertEquals(a, result.getAx(), TOLERANCE);
+            assertEquals(alpha, result.getAlpha(), TOLERANCE);
+        }
+    }
+
+    @Test
+    public void forwardDynamicsInvertsInverseDynamicsFromRest() {
+        //At rest, static friction acts against the commanded torque rather than the motion
+        MutableDifferentialWheelState command = new MutableDifferentialWheelState();
+        MutableRigidBodyState2d result = new MutableRigidBodyState2d();
+        double[][] accelerations = {{2.0, 0.0}, {-2.0, 0.0}, {0.0, 3.0}, {0.0, -3.0}, {1.5, -2.5}, {-1.0, 4.0}};
+        for (double[] acceleration : accelerations) {
+            dynamics.inverseDynamics(0.0, 0.0, acceleration[0], acceleration[1], command);
+            dynamics.forwardDynamics(0.0, 0.0, command.getLeftVoltage(), command.getRightVoltage(), result);
+
+            assertEquals(acceleration[0], result.getAx(), TOLERANCE);
+            assertEquals(acceleration[1], result.getAlpha(), TOLERANCE);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package frckit.physics.drivetrain.differential;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DifferentialDrivetrainIntegratorTest {
+    private static final double DURATION = 2.0;
+    private static final double LEFT_VOLTAGE = 6.0;
+    private static final double RIGHT_VOLTAGE = 9.0;
+
+    private final DifferentialDrivetrainDynamics dynamics = DifferentialDrivetrainDynamics.fromHybridCharacterization(
+            60.0, 6.0, 0.5, 0.0762, 0.35,
+            0.2, 0.23, 3.47,
+            0.2, 0.23, 3.47
+    );
+
+    //Drives a curve with constant voltages, starting already moving so that neither side crosses zero speed (where
+    //friction makes the dynamics non-smooth).  Returns {x, y, theta, v, omega} at the end.
+    private double[] simulate(DifferentialDrivetrainIntegrator.Method method, double dt) {
+        DifferentialDrivetrainIntegrator integrator = new DifferentialDrivetrainIntegrator(dynamics, method);
+        integrator.reset(0.0, 0.0, 0.0, 1.0, 0.5);
+        int steps = (int) Math.round(DURATION / dt);
+        for (int i = 0; i < steps; i++) {
+            integrator.step(LEFT_VOLTAGE, RIGHT_VOLTAGE, dt);
+        }
+        return new double[] {
+                integrator.getX(), integrator.getY(), integrator.getTheta(),
+                integrator.getVelocity(), integrator.getOmega()
+        };
+    }
+
+    private static double error(double[] state, double[] reference) {
+        double dtheta = Math.atan2(Math.sin(state[2] - reference[2]), Math.cos(state[2] - reference[2]));
+        return Math.hypot(state[0] - reference[0], state[1] - reference[1]) + Math.abs(dtheta)
+                + Math.abs(state[3] - reference[3]) + Math.abs(state[4] - reference[4]);
+    }
+
+    @Test
+    public void rk4ConvergesAtFourthOrder() {
+        double[] reference = simulate(DifferentialDrivetrainIntegrator.Method.RK4, 1e-4);
+        double previousError = Double.NaN;
+        for (double dt = 0.08; dt >= 0.01; dt /= 2.0) {
+            double error = error(simulate(DifferentialDrivetrainIntegrator.Method.RK4, dt), reference);
+            if (!Double.isNaN(previousError)) {
+                //Halving the step divides the error of a fourth order method by about 16
+                double ratio = previousError / error;
+                assertTrue(ratio > 10.0, "Error ratio " + ratio + " at dt=" + dt + " is not fourth order");
+            }
+            previousError = error;
+        }
+        assertTrue(previousError < 1e-6, "RK4 error " + previousError + " at dt=0.01 is too large");
+    }
+
+    @Test
+    public void rk4IsMoreAccurateThanEuler() {
+        double[] reference = simulate(DifferentialDrivetrainIntegrator.Method.RK4, 1e-4);
+        double rk4Error = error(simulate(DifferentialDrivetrainIntegrator.Method.RK4, 0.02), reference);
+        double eulerError = error(simulate(DifferentialDrivetrainIntegrator.Method.SEMI_IMPLICIT_EULER, 0.02), reference);
+        assertTrue(rk4Error < eulerError, "RK4 error " + rk4Error + " is not less than Euler error " + eulerError);
+    }
+
+    @Test
+    public void headingIsWrapped() {
+        for (DifferentialDrivetrainIntegrator.Method method : DifferentialDrivetrainIntegrator.Method.values()) {
+            //Turn in place for long enough to make several revolutions
+            DifferentialDrivetrainIntegrator integrator = new DifferentialDrivetrainIntegrator(dynamics, method);
+            for (int i = 0; i < 1000; i++) {
+                integrator.step(-6.0, 6.0, 0.02);
+                double theta = integrator.getTheta();
+                assertTrue(theta >= -Math.PI && theta <= Math.PI, method + " heading " + theta + " is not wrapped");
+            }
+        }
+    }
+}
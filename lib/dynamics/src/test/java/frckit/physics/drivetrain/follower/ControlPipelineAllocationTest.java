@@ -0,0 +1,90 @@
+package frckit.physics.drivetrain.follower;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import frckit.physics.drivetrain.differential.DifferentialDrivetrainDynamics;
+import frckit.physics.drivetrain.differential.MutableDifferentialWheelState;
+import frckit.physics.state.MutableRigidBodyState2d;
+import frckit.util.MutablePose2d;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the trajectory -> feedback -> wheel voltage pipeline does not allocate once it is warmed up, by
+ * measuring the bytes allocated by the test thread over many update calls.
+ */
+public class ControlPipelineAllocationTest {
+    private static final double PERIOD = 0.02;
+    private static final int WARMUP_UPDATES = 200_000; //Enough for the JIT to compile (and escape analyze) the pipeline
+    private static final int UPDATES = 100_000;
+    private static final int ROUNDS = 3;
+
+    private final DifferentialDrivetrainDynamics dynamics = DifferentialDrivetrainDynamics.fromHybridCharacterization(
+            60.0, 6.0, 0.0, 0.0762, 0.35,
+            0.2, 0.23, 3.47,
+            0.2, 0.23, 3.47
+    );
+
+    private final MutablePose2d pose = new MutablePose2d(0.01, 0.02, 0.03);
+    private final MutableRigidBodyState2d target = new MutableRigidBodyState2d();
+    private final MutableDifferentialWheelState command = new MutableDifferentialWheelState();
+    private DrivetrainTrajectoryFollower follower;
+    private double timestamp;
+    private double voltageSum; //Consumes the output, so the pipeline cannot be optimized away
+
+    private void runPipeline(int updates) {
+        for (int i = 0; i < updates; i++) {
+            if (follower.isDone()) {
+                follower.reset();
+            }
+            timestamp += PERIOD;
+            follower.update(timestamp, pose, target);
+            dynamics.inverseDynamics(target, command);
+            voltageSum += command.getLeftVoltage() + command.getRightVoltage();
+        }
+    }
+
+    @Test
+    public void pipelineDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isThreadAllocatedMemorySupported(), "Allocation measurement is not supported by this JVM");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        Trajectory trajectory = TrajectoryGenerator.generateTrajectory(
+                List.of(
+                        new Pose2d(),
+                        new Pose2d(3.0, 1.0, new Rotation2d(0.5)),
+                        new Pose2d(6.0, 0.0, new Rotation2d())
+                ),
+                new TrajectoryConfig(3.0, 2.0)
+        );
+        follower = new DrivetrainTrajectoryFollower(trajectory, new NonholonomicNonlinearFeedback());
+        runPipeline(WARMUP_UPDATES);
+
+        //Reading the counter may itself allocate a little, so measure that and subtract it
+        long overheadStart = threads.getThreadAllocatedBytes(thread);
+        long overhead = threads.getThreadAllocatedBytes(thread) - overheadStart;
+
+        //The JVM occasionally allocates a few bytes on the thread by itself (for example, when switching to newly
+        //compiled code), so take the best of a few rounds.  A pipeline which allocates does so in every round.
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = threads.getThreadAllocatedBytes(thread);
+            runPipeline(UPDATES);
+            allocated = Math.min(allocated, threads.getThreadAllocatedBytes(thread) - start - overhead);
+        }
+
+        assertTrue(Double.isFinite(voltageSum));
+        assertEquals(0L, allocated, "Bytes allocated over " + UPDATES + " pipeline updates");
+    }
+}
@@ -0,0 +1,219 @@
+package frckit.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+
+import java.util.Optional;
+
+/**
+ * Stores a fixed capacity history of timestamped poses which can be written by one thread and read by any number of
+ * other threads without locking.  This is intended for robots which run odometry on a dedicated high rate thread, while
+ * the main loop and vision threads need to look up past poses.
+ *
+ * Writes are guarded by a sequence number (a "seqlock", see {@link SequenceLock}).  The writer makes the sequence odd
+ * before modifying the history, and even again once it is done.  Readers copy the samples they need and then check that
+ * the sequence did not change while they were reading, retrying if it did.  The writer never blocks or waits for
+ * readers, and readers never block each other.  Since a write only touches a single sample, retries are rare and short.
+ *
+ * Only ONE thread may call the writer methods ("insert" and "reset").  Samples must be inserted in increasing timestamp
+ * order, older samples are rejected.
+ *
+ * @see PoseHistory
+ */
+public class ConcurrentPoseHistory {
+    private final int capacity;
+    private final double[] timestamps;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] thetas;
+
+    //Only modified by the writer thread, and only while the sequence is odd.  Readers take a snapshot of the head and
+    //size, and use the static RingIndex methods on it.
+    private final RingIndex ring;
+
+    private final SequenceLock sequence = new SequenceLock();
+
+    /**
+     * Creates a new ConcurrentPoseHistory with the given capacity.  When the history is at capacity, the oldest poses
+     * are removed as new ones are inserted.
+     * @param capacity The capacity of the history, which must be positive
+     */
+    public ConcurrentPoseHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        timestamps = new double[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        thetas = new double[capacity];
+        ring = new RingIndex(capacity);
+    }
+
+    /**
+     * Resets the pose history, deleting all entries.  This must only be called from the writer thread.
+     */
+    public void reset() {
+        long seq = sequence.beginWrite();
+        ring.clear();
+        sequence.endWrite(seq);
+    }
+
+    /**
+     * Inserts a new timestamped pose into the history.  This must only be called from the writer thread.
+     * @param timestamp The timestamp, in seconds
+     * @param pose The pose
+     * @return True if the pose was inserted, or false if it was rejected for being older than the latest pose
+     */
+    public boolean insert(double timestamp, Pose2d pose) {
+        return insert(timestamp, pose.getX(), pose.getY(), pose.getRotation().getRadians());
+    }
+
+    /**
+     * Inserts a new timestamped pose into the history.  This must only be called from the writer thread.  This never
+     * blocks and does not allocate.
+     * @param timestamp The timestamp, in seconds
+     * @param x The x coordinate of the pose
+     * @param y The y coordinate of the pose
+     * @param theta The heading of the pose, in radians
+     * @return True if the pose was inserted, or false if it was rejected for being older than the latest pose
+     */
+    public boolean insert(double timestamp, double x, double y, double theta) {
+        //Only the writer thread modifies the history, so it can read it without checking the sequence
+        if (ring.size() > 0 && timestamp <= timestamps[ring.latest()]) {
+            return false;
+        }
+
+        long seq = sequence.beginWrite();
+        int index = ring.append(); //Overwrites the oldest sample if the history is full
+        timestamps[index] = timestamp;
+        xs[index] = x;
+        ys[index] = y;
+        thetas[index] = theta;
+        sequence.endWrite(seq);
+        return true;
+    }
+
+    /**
+     * Gets the timestamp of the latest pose in the history.
+     * @return The latest timestamp, in seconds, or NaN if the history is empty
+     */
+    public double getLatestTimestamp() {
+        while (true) {
+            long seq = sequence.beginRead();
+            int count = ring.size();
+            double timestamp = count == 0 ? Double.NaN : timestamps[physicalIndex(ring.head(), count - 1)];
+            if (sequence.validateRead(seq)) {
+                return timestamp;
+            }
+        }
+    }
+
+    /**
+     * Gets the latest timestamp and pose from the history.
+     * @return An object containing the timestamp and the pose
+     */
+    public Optional<PoseHistory.TimestampedPose2d> getLatest() {
+        MutablePose2d pose = new MutablePose2d();
+        double timestamp = getLatest(pose);
+        if (Double.isNaN(timestamp)) {
+            return Optional.empty();
+        }
+        return Optional.of(new PoseHistory.TimestampedPose2d(timestamp, pose.toPose2d()));
+    }
+
+    /**
+     * Gets the latest pose from the history, writing it into a caller owned pose.  This does not allocate.
+     * @param out The pose to write the latest pose into.  This is not modified if the history is empty.
+     * @return The timestamp of the latest pose, in seconds, or NaN if the history is empty
+     */
+    public double getLatest(MutablePose2d out) {
+        while (true) {
+            long seq = sequence.beginRead();
+            int count = ring.size();
+            if (count == 0) {
+                if (sequence.validateRead(seq)) {
+                    return Double.NaN;
+                }
+                continue;
+            }
+            int latest = physicalIndex(ring.head(), count - 1);
+            double timestamp = timestamps[latest];
+            double x = xs[latest];
+            double y = ys[latest];
+            double theta = thetas[latest];
+            if (sequence.validateRead(seq)) {
+                out.set(x, y, theta);
+                return timestamp;
+            }
+        }
+    }
+
+    /**
+     * Retrieves a pose at the given timestamp.  If no pose is available at the requested timestamp, interpolation is
+     * performed between the two timestamps nearest to the one requested.
+     * @param timestamp The timestamp to obtain a pose at
+     * @return An Optional object which potentially contains the located pose, or is empty if no pose could be computed.
+     */
+    public Optional<Pose2d> get(double timestamp) {
+        MutablePose2d pose = new MutablePose2d();
+        if (!get(timestamp, pose)) {
+            return Optional.empty();
+        }
+        return Optional.of(pose.toPose2d());
+    }
+
+    /**
+     * Retrieves a pose at the given timestamp, writing it into a caller owned pose.  If no pose is available at the
+     * requested timestamp, interpolation is performed between the two timestamps nearest to the one requested.  This
+     * can be called from any thread, never takes a lock, and does not allocate.
+     * @param timestamp The timestamp to obtain a pose at
+     * @param out The pose to write the located pose into.  This is not modified if no pose could be computed.
+     * @return True if a pose was computed, or false if the history is empty
+     */
+    public boolean get(double timestamp, MutablePose2d out) {
+        while (true) {
+            long seq = sequence.beginRead();
+            int count = ring.size();
+            int start = ring.head();
+            if (count == 0) {
+                if (sequence.validateRead(seq)) {
+                    return false;
+                }
+                continue;
+            }
+
+            //Binary search for the first sample at or after the timestamp
+            int low = RingIndex.lowerBound(timestamps, start, count, capacity, timestamp);
+
+            //Copy out the surrounding samples.  At the ends of the history, both samples are the nearest one.
+            int top = physicalIndex(start, Math.min(low, count - 1));
+            int bottom = low == 0 || low == count ? top : physicalIndex(start, low - 1);
+            double topTimestamp = timestamps[top];
+            double topX = xs[top];
+            double topY = ys[top];
+            double topTheta = thetas[top];
+            double bottomTimestamp = timestamps[bottom];
+            double bottomX = xs[bottom];
+            double bottomY = ys[bottom];
+            double bottomTheta = thetas[bottom];
+
+            if (!sequence.validateRead(seq)) {
+                continue; //The writer modified the history while we were reading, try again
+            }
+
+            if (top == bottom || topTimestamp == timestamp) {
+                out.set(topX, topY, topTheta);
+            } else {
+                double t = (timestamp - bottomTimestamp) / (topTimestamp - bottomTimestamp);
+                GeomUtil.interpolate(bottomX, bottomY, bottomTheta, topX, topY, topTheta, t, out);
+            }
+            return true;
+        }
+    }
+
+    //Readers may see stale values of head and size, but since each is always within [0, capacity] the result stays
+    //within the arrays
+    private int physicalIndex(int start, int index) {
+        return RingIndex.physicalIndex(start, index, capacity);
+    }
+}
@@ -10,6 +10,9 @@ import edu.wpi.first.math.util.Units;
  * * Methods for creating poses and transforms from a pure rotation or a pure translation
  * * Methods for converting Pose2d objects to Transform2d objects and vice versa
  * * Methods for converting translations, transforms, and poses between meters and inches
+ * * Primitive versions of the pose operations (compose, inverse, relativeTo, log, exp, interpolate, and unit
+ *   conversion) which operate on raw x, y, and heading values and write into a caller owned MutablePose2d, so that
+ *   code which runs thousands of times per second does not need to allocate
  */
 public class GeomUtil {
     /**
@@ -186,6 +189,236 @@ public class GeomUtil {
         return lhs.exp(scaled);
     }
 
+    /**
+     * Interpolates between two poses based on the scale factor t, writing the result into a caller owned pose.  This
+     * produces the same result as {@link #interpolate(Pose2d, Pose2d, double)}, but operates directly on primitive
+     * values and does not allocate.
+     * @param lhsX The x coordinate of the first pose
+     * @param lhsY The y coordinate of the first pose
+     * @param lhsTheta The heading of the first pose, in radians
+     * @param rhsX The x coordinate of the last pose
+     * @param rhsY The y coordinate of the last pose
+     * @param rhsTheta The heading of the last pose, in radians
+     * @param t The scale factor, between 0 and 1, inclusive
+     * @param out The pose to write the interpolated result into
+     */
+    public static void interpolate(double lhsX, double lhsY, double lhsTheta,
+                                   double rhsX, double rhsY, double rhsTheta,
+                                   double t, MutablePose2d out) {
+        if (t <= 0) {
+            out.set(lhsX, lhsY, lhsTheta);
+            return;
+        } else if (t >= 1) {
+            out.set(rhsX, rhsY, rhsTheta);
+            return;
+        }
+        double lhsCos = Math.cos(lhsTheta);
+        double lhsSin = Math.sin(lhsTheta);
+        double rhsCos = Math.cos(rhsTheta);
+        double rhsSin = Math.sin(rhsTheta);
+
+        //Log: find the twist from lhs to rhs, starting with rhs relative to lhs
+        double dx = rhsX - lhsX;
+        double dy = rhsY - lhsY;
+        double relX = dx * lhsCos + dy * lhsSin;
+        double relY = -dx * lhsSin + dy * lhsCos;
+        double relCos = rhsCos * lhsCos + rhsSin * lhsSin;
+        double relSin = rhsSin * lhsCos - rhsCos * lhsSin;
+        //Normalized like Rotation2d(x, y), since the (cos - 1) in halfThetaByTanOfHalfDtheta magnifies any rounding
+        double relNorm = Math.hypot(relCos, relSin);
+        relCos /= relNorm;
+        relSin /= relNorm;
+        double dtheta = Math.atan2(relSin, relCos);
+
+        double halfDtheta = dtheta / 2.0;
+        double halfThetaByTanOfHalfDtheta = halfThetaByTanOfHalfDtheta(dtheta, relCos, relSin);
+
+        //Scale the twist by t
+        double twistDx = (relX * halfThetaByTanOfHalfDtheta + relY * halfDtheta) * t;
+        double twistDy = (relY * halfThetaByTanOfHalfDtheta - relX * halfDtheta) * t;
+        double twistDtheta = dtheta * t;
+
+        //Exp: apply the scaled twist to lhs
+        exp(lhsX, lhsY, lhsCos, lhsSin, twistDx, twistDy, twistDtheta, out);
+    }
+
+    /**
+     * Composes two poses (applies the second pose as a transform to the first), writing the result into a caller owned
+     * pose.  This produces the same result as {@link Pose2d#transformBy(Transform2d)}, but operates directly on
+     * primitive values and does not allocate.
+     * @param x The x coordinate of the first pose
+     * @param y The y coordinate of the first pose
+     * @param theta The heading of the first pose, in radians
+     * @param transformX The x coordinate of the transform
+     * @param transformY The y coordinate of the transform
+     * @param transformTheta The rotation of the transform, in radians
+     * @param out The pose to write the result into
+     */
+    public static void compose(double x, double y, double theta,
+                               double transformX, double transformY, double transformTheta,
+                               MutablePose2d out) {
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        double transformCos = Math.cos(transformTheta);
+        double transformSin = Math.sin(transformTheta);
+        out.set(
+                x + transformX * cos - transformY * sin,
+                y + transformX * sin + transformY * cos,
+                Math.atan2(sin * transformCos + cos * transformSin, cos * transformCos - sin * transformSin)
+        );
+    }
+
+    /**
+     * Inverts a pose, writing the result into a caller owned pose.  This produces the same result as
+     * {@link #poseInverse(Pose2d)}, but operates directly on primitive values and does not allocate.  Like
+     * {@link Rotation2d#unaryMinus()}, the heading is negated without being wrapped.
+     * @param x The x coordinate of the pose
+     * @param y The y coordinate of the pose
+     * @param theta The heading of the pose, in radians
+     * @param out The pose to write the result into
+     */
+    public static void inverse(double x, double y, double theta, MutablePose2d out) {
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        out.set(-x * cos - y * sin, x * sin - y * cos, -theta);
+    }
+
+    /**
+     * Finds a pose relative to another pose, writing the result into a caller owned pose.  This produces the same
+     * result as {@link Pose2d#relativeTo(Pose2d)}, but operates directly on primitive values and does not allocate.
+     * @param x The x coordinate of the pose
+     * @param y The y coordinate of the pose
+     * @param theta The heading of the pose, in radians
+     * @param originX The x coordinate of the pose to make the result relative to
+     * @param originY The y coordinate of the pose to make the result relative to
+     * @param originTheta The heading of the pose to make the result relative to, in radians
+     * @param out The pose to write the result into
+     */
+    public static void relativeTo(double x, double y, double theta,
+                                  double originX, double originY, double originTheta,
+                                  MutablePose2d out) {
+        double originCos = Math.cos(originTheta);
+        double originSin = Math.sin(originTheta);
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        double dx = x - originX;
+        double dy = y - originY;
+        out.set(
+                dx * originCos + dy * originSin,
+                -dx * originSin + dy * originCos,
+                Math.atan2(sin * originCos - cos * originSin, cos * originCos + sin * originSin)
+        );
+    }
+
+    /**
+     * Finds the twist which moves one pose to another, writing the result into a caller owned twist.  This produces the
+     * same result as {@link Pose2d#log(Pose2d)}, but operates directly on primitive values and does not allocate.
+     * @param startX The x coordinate of the starting pose
+     * @param startY The y coordinate of the starting pose
+     * @param startTheta The heading of the starting pose, in radians
+     * @param endX The x coordinate of the ending pose
+     * @param endY The y coordinate of the ending pose
+     * @param endTheta The heading of the ending pose, in radians
+     * @param out The twist to write the result into
+     */
+    public static void log(double startX, double startY, double startTheta,
+                           double endX, double endY, double endTheta,
+                           Twist2d out) {
+        double startCos = Math.cos(startTheta);
+        double startSin = Math.sin(startTheta);
+        double endCos = Math.cos(endTheta);
+        double endSin = Math.sin(endTheta);
+
+        //Find the end pose relative to the start pose
+        double dx = endX - startX;
+        double dy = endY - startY;
+        double relX = dx * startCos + dy * startSin;
+        double relY = -dx * startSin + dy * startCos;
+        double relCos = endCos * startCos + endSin * startSin;
+        double relSin = endSin * startCos - endCos * startSin;
+        //Normalized like Rotation2d(x, y), since the (cos - 1) in halfThetaByTanOfHalfDtheta magnifies any rounding
+        double relNorm = Math.hypot(relCos, relSin);
+        relCos /= relNorm;
+        relSin /= relNorm;
+        double dtheta = Math.atan2(relSin, relCos);
+
+        double halfDtheta = dtheta / 2.0;
+        double halfThetaByTanOfHalfDtheta = halfThetaByTanOfHalfDtheta(dtheta, relCos, relSin);
+        out.dx = relX * halfThetaByTanOfHalfDtheta + relY * halfDtheta;
+        out.dy = relY * halfThetaByTanOfHalfDtheta - relX * halfDtheta;
+        out.dtheta = dtheta;
+    }
+
+    //The scale factor applied to the translation part of a twist when computing the log of a relative pose
+    private static double halfThetaByTanOfHalfDtheta(double dtheta, double cos, double sin) {
+        double cosMinusOne = cos - 1.0;
+        if (Math.abs(cosMinusOne) < 1e-9) {
+            return 1.0 - 1.0 / 12.0 * dtheta * dtheta;
+        }
+        return -(dtheta / 2.0 * sin) / cosMinusOne;
+    }
+
+    /**
+     * Converts a pose measured in inches to a pose measured in meters, writing the result into a caller owned pose.
+     * @param x The x coordinate of the pose, in inches
+     * @param y The y coordinate of the pose, in inches
+     * @param theta The heading of the pose, in radians
+     * @param out The pose to write the result into
+     */
+    public static void inchesToMeters(double x, double y, double theta, MutablePose2d out) {
+        out.set(Units.inchesToMeters(x), Units.inchesToMeters(y), theta);
+    }
+
+    /**
+     * Converts a pose measured in meters to a pose measured in inches, writing the result into a caller owned pose.
+     * @param x The x coordinate of the pose, in meters
+     * @param y The y coordinate of the pose, in meters
+     * @param theta The heading of the pose, in radians
+     * @param out The pose to write the result into
+     */
+    public static void metersToInches(double x, double y, double theta, MutablePose2d out) {
+        out.set(Units.metersToInches(x), Units.metersToInches(y), theta);
+    }
+
+    /**
+     * Applies a twist to a pose, writing the result into a caller owned pose.  This produces the same result as
+     * {@link Pose2d#exp(Twist2d)}, but operates directly on primitive values and does not allocate.
+     * @param x The x coordinate of the pose
+     * @param y The y coordinate of the pose
+     * @param theta The heading of the pose, in radians
+     * @param dx The x component of the twist
+     * @param dy The y component of the twist
+     * @param dtheta The angular component of the twist, in radians
+     * @param out The pose to write the result into
+     */
+    public static void exp(double x, double y, double theta, double dx, double dy, double dtheta, MutablePose2d out) {
+        exp(x, y, Math.cos(theta), Math.sin(theta), dx, dy, dtheta, out);
+    }
+
+    //Exp with the cosine and sine of the pose's heading already computed
+    private static void exp(double x, double y, double cos, double sin,
+                            double dx, double dy, double dtheta, MutablePose2d out) {
+        double sinTheta = Math.sin(dtheta);
+        double cosTheta = Math.cos(dtheta);
+        double s;
+        double c;
+        if (Math.abs(dtheta) < 1e-9) {
+            s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+            c = 0.5 * dtheta;
+        } else {
+            s = sinTheta / dtheta;
+            c = (1.0 - cosTheta) / dtheta;
+        }
+        double localX = dx * s - dy * c;
+        double localY = dx * c + dy * s;
+
+        out.set(
+                x + localX * cos - localY * sin,
+                y + localX * sin + localY * cos,
+                Math.atan2(sin * cosTheta + cos * sinTheta, cos * cosTheta - sin * sinTheta)
+        );
+    }
+
     /**
      * Returns the direction that this translation makes with the origin as a Rotation2d
      * @param translation The translation
@@ -0,0 +1,120 @@
+package frckit.util;
+
+/**
+ * Stores a fixed capacity history of timestamped double values (such as a turret angle, elevator height, or gyro rate),
+ * and linearly interpolates between them.  This is the scalar equivalent of {@link PoseHistory}, useful for latency
+ * compensation of any signal.
+ *
+ * Samples are stored in primitive arrays used as a ring buffer and found with a binary search, so nothing is boxed and
+ * nothing is allocated after construction.  Samples are expected to be inserted in increasing timestamp order, but out
+ * of order samples are still accepted and sorted into place.
+ *
+ * @see InterpolatingMultiDoubleHistory
+ */
+public class InterpolatingDoubleHistory {
+    private final double[] timestamps;
+    private final double[] values;
+
+    private final RingIndex ring;
+    //Copies a sample when the ring shifts samples to make room for an out of order insert
+    private final RingIndex.SampleMover mover;
+
+    /**
+     * Creates a new InterpolatingDoubleHistory with the given capacity.  When the history is at capacity, the oldest
+     * values are removed as new ones are inserted.
+     * @param capacity The capacity of the history, which must be positive
+     */
+    public InterpolatingDoubleHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        timestamps = new double[capacity];
+        values = new double[capacity];
+        ring = new RingIndex(capacity);
+        mover = (from, to) -> {
+            timestamps[to] = timestamps[from];
+            values[to] = values[from];
+        };
+    }
+
+    /**
+     * Resets the history, deleting all entries.
+     */
+    public void reset() {
+        ring.clear();
+    }
+
+    /**
+     * @return The number of values in the history
+     */
+    public int size() {
+        return ring.size();
+    }
+
+    /**
+     * @return True if the history contains no values
+     */
+    public boolean isEmpty() {
+        return ring.size() == 0;
+    }
+
+    /**
+     * Inserts a new timestamped value into the history.
+     * @param timestamp The timestamp, in seconds
+     * @param value The value
+     */
+    public void insert(double timestamp, double value) {
+        int index = ring.insertionIndex(timestamps, timestamp);
+        if (index < 0) {
+            //Replace the existing sample at this timestamp
+            values[ring.physicalIndex(-index - 1)] = value;
+            return;
+        }
+
+        //Evicts the oldest sample if the history is full, and shifts any newer samples forwards to make room (only
+        //happens for out of order inserts)
+        int physical = ring.insert(index, mover);
+        timestamps[physical] = timestamp;
+        values[physical] = value;
+    }
+
+    /**
+     * @return The timestamp of the latest value in the history, in seconds, or NaN if the history is empty
+     */
+    public double getLatestTimestamp() {
+        return ring.size() == 0 ? Double.NaN : timestamps[ring.latest()];
+    }
+
+    /**
+     * @return The latest value in the history, or NaN if the history is empty
+     */
+    public double getLatest() {
+        return ring.size() == 0 ? Double.NaN : values[ring.latest()];
+    }
+
+    /**
+     * Retrieves the value at the given timestamp.  If no value is available at the requested timestamp, linear
+     * interpolation is performed between the two timestamps nearest to the one requested.  Timestamps outside of the
+     * history return the nearest value.
+     * @param timestamp The timestamp to obtain a value at
+     * @return The located value, or NaN if the history is empty
+     */
+    public double get(double timestamp) {
+        if (ring.size() == 0) {
+            return Double.NaN;
+        }
+
+        int upper = ring.lowerBound(timestamps, timestamp);
+        if (upper == ring.size()) {
+            return values[ring.latest()];
+        }
+        int top = ring.physicalIndex(upper);
+        if (upper == 0 || timestamps[top] == timestamp) {
+            return values[top];
+        }
+
+        int bottom = ring.physicalIndex(upper - 1);
+        double t = (timestamp - timestamps[bottom]) / (timestamps[top] - timestamps[bottom]);
+        return values[bottom] + (values[top] - values[bottom]) * t;
+    }
+}
@@ -0,0 +1,161 @@
+package frckit.util;
+
+/**
+ * Stores a fixed capacity history of several double signals (channels) which are sampled together under one shared
+ * timestamp, and linearly interpolates between them.  For example, a turret angle and hood angle read in the same loop
+ * cycle can share one history rather than each storing their own copy of the timestamps.
+ *
+ * Each sample's channel values are stored next to each other in a single primitive array used as a ring buffer, and
+ * samples are found with a binary search over the timestamps.  Nothing is boxed and nothing is allocated after
+ * construction.  Samples are expected to be inserted in increasing timestamp order, but out of order samples are still
+ * accepted and sorted into place.
+ *
+ * @see InterpolatingDoubleHistory
+ */
+public class InterpolatingMultiDoubleHistory {
+    private final int channels;
+    private final double[] timestamps;
+    private final double[] values; //Sample i, channel c is stored at i * channels + c
+
+    private final RingIndex ring;
+    //Copies a sample when the ring shifts samples to make room for an out of order insert
+    private final RingIndex.SampleMover mover;
+
+    /**
+     * Creates a new InterpolatingMultiDoubleHistory with the given capacity.  When the history is at capacity, the
+     * oldest samples are removed as new ones are inserted.
+     * @param capacity The capacity of the history, which must be positive
+     * @param channels The number of values stored with each timestamp, which must be positive
+     */
+    public InterpolatingMultiDoubleHistory(int capacity, int channels) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        if (channels <= 0) {
+            throw new IllegalArgumentException("Channel count must be positive, got " + channels);
+        }
+        this.channels = channels;
+        timestamps = new double[capacity];
+        values = new double[capacity * channels];
+        ring = new RingIndex(capacity);
+        mover = (from, to) -> {
+            timestamps[to] = timestamps[from];
+            System.arraycopy(values, from * channels, values, to * channels, channels);
+        };
+    }
+
+    /**
+     * Resets the history, deleting all entries.
+     */
+    public void reset() {
+        ring.clear();
+    }
+
+    /**
+     * @return The number of values stored with each timestamp
+     */
+    public int getChannelCount() {
+        return channels;
+    }
+
+    /**
+     * @return The number of samples in the history
+     */
+    public int size() {
+        return ring.size();
+    }
+
+    /**
+     * @return True if the history contains no samples
+     */
+    public boolean isEmpty() {
+        return ring.size() == 0;
+    }
+
+    /**
+     * Inserts a new timestamped sample into the history.
+     * @param timestamp The timestamp, in seconds
+     * @param sample The value of each channel.  The first getChannelCount() elements are copied into the history.
+     */
+    public void insert(double timestamp, double[] sample) {
+        int index = ring.insertionIndex(timestamps, timestamp);
+        if (index < 0) {
+            //Replace the existing sample at this timestamp
+            System.arraycopy(sample, 0, values, ring.physicalIndex(-index - 1) * channels, channels);
+            return;
+        }
+
+        //Evicts the oldest sample if the history is full, and shifts any newer samples forwards to make room (only
+        //happens for out of order inserts)
+        int physical = ring.insert(index, mover);
+        timestamps[physical] = timestamp;
+        System.arraycopy(sample, 0, values, physical * channels, channels);
+    }
+
+    /**
+     * @return The timestamp of the latest sample in the history, in seconds, or NaN if the history is empty
+     */
+    public double getLatestTimestamp() {
+        return ring.size() == 0 ? Double.NaN : timestamps[ring.latest()];
+    }
+
+    /**
+     * Retrieves the value of every channel at the given timestamp.  If no sample is available at the requested
+     * timestamp, linear interpolation is performed between the two timestamps nearest to the one requested.
+     * Timestamps outside of the history return the nearest sample.
+     * @param timestamp The timestamp to obtain values at
+     * @param out The array to write the value of each channel into, which must have a length of at least
+     *            getChannelCount().  This is not modified if the history is empty.
+     * @return True if the values were computed, or false if the history is empty
+     */
+    public boolean get(double timestamp, double[] out) {
+        int size = ring.size();
+        if (size == 0) {
+            return false;
+        }
+
+        int upper = ring.lowerBound(timestamps, timestamp);
+        if (upper == size || upper == 0 || timestamps[ring.physicalIndex(upper)] == timestamp) {
+            //Ends of the history, or an exact match
+            int nearest = ring.physicalIndex(Math.min(upper, size - 1));
+            System.arraycopy(values, nearest * channels, out, 0, channels);
+            return true;
+        }
+
+        int top = ring.physicalIndex(upper);
+        int bottom = ring.physicalIndex(upper - 1);
+        double t = (timestamp - timestamps[bottom]) / (timestamps[top] - timestamps[bottom]);
+        int topOffset = top * channels;
+        int bottomOffset = bottom * channels;
+        for (int c = 0; c < channels; c++) {
+            double bottomValue = values[bottomOffset + c];
+            out[c] = bottomValue + (values[topOffset + c] - bottomValue) * t;
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the value of a single channel at the given timestamp.
+     * @param timestamp The timestamp to obtain a value at
+     * @param channel The index of the channel
+     * @return The located value, or NaN if the history is empty
+     * @see #get(double, double[])
+     */
+    public double get(double timestamp, int channel) {
+        int size = ring.size();
+        if (size == 0) {
+            return Double.NaN;
+        }
+
+        int upper = ring.lowerBound(timestamps, timestamp);
+        if (upper == size || upper == 0 || timestamps[ring.physicalIndex(upper)] == timestamp) {
+            return values[ring.physicalIndex(Math.min(upper, size - 1)) * channels + channel];
+        }
+
+        int top = ring.physicalIndex(upper);
+        int bottom = ring.physicalIndex(upper - 1);
+        double t = (timestamp - timestamps[bottom]) / (timestamps[top] - timestamps[bottom]);
+        double bottomValue = values[bottom * channels + channel];
+        return bottomValue + (values[top * channels + channel] - bottomValue) * t;
+    }
+}
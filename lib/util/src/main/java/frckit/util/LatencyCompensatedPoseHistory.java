@@ -0,0 +1,307 @@
+package frckit.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Twist2d;
+
+import java.util.Optional;
+
+/**
+ * Stores a history of odometry updates (twists) along with the poses they produce, so that delayed absolute
+ * measurements (such as a vision pose fix) can be fused in at the time they were actually captured.
+ *
+ * When a measurement arrives for time t, the pose at t is corrected towards the measurement, and only the odometry
+ * twists recorded after t are re-applied on top of the corrected pose.  Every later sample is updated in place, so the
+ * latest pose reflects the correction immediately.  A measurement which falls between two samples is stored as a new
+ * sample (evicting the oldest sample if the history is full), so the corrected pose at t is kept as well.  The cost of
+ * a correction is proportional to the number of samples between t and the latest sample, which is bounded by the
+ * capacity of the history.
+ *
+ * Samples are stored in parallel primitive arrays used as a ring buffer, and none of the primitive methods allocate.
+ * Odometry must be added in increasing timestamp order.
+ *
+ * @see PoseHistory
+ */
+public class LatencyCompensatedPoseHistory {
+    private final double[] timestamps;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] thetas;
+    //The twist which moved the previous sample's pose to this sample's pose
+    private final double[] dxs;
+    private final double[] dys;
+    private final double[] dthetas;
+
+    private final RingIndex ring;
+    //Copies a sample when the ring shifts samples to make room for a measurement between two samples
+    private final RingIndex.SampleMover mover;
+
+    private final MutablePose2d scratch = new MutablePose2d();
+
+    /**
+     * Creates a new LatencyCompensatedPoseHistory with the given capacity.  The capacity determines how old a
+     * measurement can be while still being fused in.  For example, a capacity of 50 with 200Hz odometry allows
+     * measurements up to 250ms old.
+     * @param capacity The capacity of the history, which must be positive
+     */
+    public LatencyCompensatedPoseHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        timestamps = new double[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        thetas = new double[capacity];
+        dxs = new double[capacity];
+        dys = new double[capacity];
+        dthetas = new double[capacity];
+        ring = new RingIndex(capacity);
+        mover = (from, to) -> {
+            timestamps[to] = timestamps[from];
+            xs[to] = xs[from];
+            ys[to] = ys[from];
+            thetas[to] = thetas[from];
+            dxs[to] = dxs[from];
+            dys[to] = dys[from];
+            dthetas[to] = dthetas[from];
+        };
+    }
+
+    /**
+     * Resets the history, deleting all entries.  The next odometry update will be applied to the origin.
+     */
+    public void reset() {
+        ring.clear();
+    }
+
+    /**
+     * Resets the history, deleting all entries, and seeds it with a known pose.
+     * @param timestamp The timestamp of the pose, in seconds
+     * @param pose The pose
+     */
+    public void reset(double timestamp, Pose2d pose) {
+        reset(timestamp, pose.getX(), pose.getY(), pose.getRotation().getRadians());
+    }
+
+    /**
+     * Resets the history, deleting all entries, and seeds it with a known pose.
+     * @param timestamp The timestamp of the pose, in seconds
+     * @param x The x coordinate of the pose
+     * @param y The y coordinate of the pose
+     * @param theta The heading of the pose, in radians
+     */
+    public void reset(double timestamp, double x, double y, double theta) {
+        ring.clear();
+        int index = ring.append();
+        timestamps[index] = timestamp;
+        xs[index] = x;
+        ys[index] = y;
+        thetas[index] = theta;
+        dxs[index] = 0.0;
+        dys[index] = 0.0;
+        dthetas[index] = 0.0;
+    }
+
+    /**
+     * Adds an odometry update, which moves the latest pose by the given twist.
+     * @param timestamp The timestamp of the update, in seconds
+     * @param twist The change in pose since the last update, in the robot's frame
+     * @return True if the update was added, or false if it was rejected for being older than the latest update
+     */
+    public boolean addOdometry(double timestamp, Twist2d twist) {
+        return addOdometry(timestamp, twist.dx, twist.dy, twist.dtheta);
+    }
+
+    /**
+     * Adds an odometry update, which moves the latest pose by the given twist.  If the history is empty, the twist is
+     * applied to the origin.
+     * @param timestamp The timestamp of the update, in seconds
+     * @param dx The x component of the change in pose since the last update, in the robot's frame
+     * @param dy The y component of the change in pose since the last update, in the robot's frame
+     * @param dtheta The change in heading since the last update, in radians
+     * @return True if the update was added, or false if it was rejected for being older than the latest update
+     */
+    public boolean addOdometry(double timestamp, double dx, double dy, double dtheta) {
+        if (ring.size() == 0) {
+            scratch.set(0.0, 0.0, 0.0);
+        } else {
+            int latest = ring.latest();
+            if (timestamp <= timestamps[latest]) {
+                return false;
+            }
+            scratch.set(xs[latest], ys[latest], thetas[latest]);
+        }
+        GeomUtil.exp(scratch.getX(), scratch.getY(), scratch.getTheta(), dx, dy, dtheta, scratch);
+
+        int index = ring.append(); //Overwrites the oldest sample if the history is full
+        timestamps[index] = timestamp;
+        xs[index] = scratch.getX();
+        ys[index] = scratch.getY();
+        thetas[index] = scratch.getTheta();
+        dxs[index] = dx;
+        dys[index] = dy;
+        dthetas[index] = dtheta;
+        return true;
+    }
+
+    /**
+     * Fuses in an absolute pose measurement, replacing the pose at the measurement's timestamp.
+     * @param timestamp The timestamp the measurement was captured at, in seconds
+     * @param pose The measured pose
+     * @return True if the measurement was applied, or false if it is older than the history
+     * @see #addMeasurement(double, double, double, double, double)
+     */
+    public boolean addMeasurement(double timestamp, Pose2d pose) {
+        return addMeasurement(timestamp, pose.getX(), pose.getY(), pose.getRotation().getRadians(), 1.0);
+    }
+
+    /**
+     * Fuses in an absolute pose measurement.
+     * @param timestamp The timestamp the measurement was captured at, in seconds
+     * @param pose The measured pose
+     * @param weight How much to trust the measurement, between 0 and 1
+     * @return True if the measurement was applied, or false if it is older than the history
+     * @see #addMeasurement(double, double, double, double, double)
+     */
+    public boolean addMeasurement(double timestamp, Pose2d pose, double weight) {
+        return addMeasurement(timestamp, pose.getX(), pose.getY(), pose.getRotation().getRadians(), weight);
+    }
+
+    /**
+     * Fuses in an absolute pose measurement.  The pose at the measurement's timestamp is moved towards the measured
+     * pose by the weight (0 ignores the measurement, 1 replaces the pose with the measurement, values in between
+     * interpolate), and the odometry recorded after the timestamp is replayed on top of it.  If the timestamp falls
+     * between two samples, the corrected pose is stored as a new sample at the timestamp, which evicts the oldest
+     * sample if the history is full.  Measurements newer than the latest odometry update are applied to the latest
+     * pose.
+     * @param timestamp The timestamp the measurement was captured at, in seconds
+     * @param x The x coordinate of the measured pose
+     * @param y The y coordinate of the measured pose
+     * @param theta The heading of the measured pose, in radians
+     * @param weight How much to trust the measurement, between 0 and 1
+     * @return True if the measurement was applied, or false if the history is empty or the measurement is older than
+     *         the oldest sample in the history
+     */
+    public boolean addMeasurement(double timestamp, double x, double y, double theta, double weight) {
+        if (ring.size() == 0 || timestamp < timestamps[ring.head()]) {
+            return false;
+        }
+
+        int upper = Math.min(ring.lowerBound(timestamps, timestamp), ring.size() - 1);
+        int top = ring.physicalIndex(upper);
+        if (timestamp < timestamps[top]) {
+            //Split the top sample's twist at the timestamp, and store the pose at the timestamp as a new sample, so
+            //that get() between the two samples reflects the correction too
+            int bottom = ring.physicalIndex(upper - 1);
+            double alpha = (timestamp - timestamps[bottom]) / (timestamps[top] - timestamps[bottom]);
+            double dx = dxs[top] * alpha;
+            double dy = dys[top] * alpha;
+            double dtheta = dthetas[top] * alpha;
+            dxs[top] -= dx;
+            dys[top] -= dy;
+            dthetas[top] -= dtheta;
+            GeomUtil.exp(xs[bottom], ys[bottom], thetas[bottom], dx, dy, dtheta, scratch);
+
+            //Inserting evicts the oldest sample if the history is full, which moves the new sample back by one
+            int logical = ring.isFull() ? upper - 1 : upper;
+            int index = ring.insert(upper, mover);
+            upper = logical;
+            timestamps[index] = timestamp;
+            xs[index] = scratch.getX();
+            ys[index] = scratch.getY();
+            thetas[index] = scratch.getTheta();
+            dxs[index] = dx;
+            dys[index] = dy;
+            dthetas[index] = dtheta;
+        }
+
+        //Correct the pose at the timestamp
+        int corrected = ring.physicalIndex(upper);
+        GeomUtil.interpolate(xs[corrected], ys[corrected], thetas[corrected], x, y, theta, weight, scratch);
+        xs[corrected] = scratch.getX();
+        ys[corrected] = scratch.getY();
+        thetas[corrected] = scratch.getTheta();
+
+        //Replay all odometry after the corrected sample
+        for (int i = upper + 1; i < ring.size(); i++) {
+            int previous = ring.physicalIndex(i - 1);
+            int current = ring.physicalIndex(i);
+            GeomUtil.exp(xs[previous], ys[previous], thetas[previous], dxs[current], dys[current], dthetas[current], scratch);
+            xs[current] = scratch.getX();
+            ys[current] = scratch.getY();
+            thetas[current] = scratch.getTheta();
+        }
+        return true;
+    }
+
+    /**
+     * Gets the latest timestamp and pose from the history.
+     * @return An object containing the timestamp and the pose
+     */
+    public Optional<PoseHistory.TimestampedPose2d> getLatest() {
+        double timestamp = getLatest(scratch);
+        if (Double.isNaN(timestamp)) {
+            return Optional.empty();
+        }
+        return Optional.of(new PoseHistory.TimestampedPose2d(timestamp, scratch.toPose2d()));
+    }
+
+    /**
+     * Gets the latest pose from the history, writing it into a caller owned pose.  This does not allocate.
+     * @param out The pose to write the latest pose into.  This is not modified if the history is empty.
+     * @return The timestamp of the latest pose, in seconds, or NaN if the history is empty
+     */
+    public double getLatest(MutablePose2d out) {
+        if (ring.size() == 0) {
+            return Double.NaN;
+        }
+        int latest = ring.latest();
+        out.set(xs[latest], ys[latest], thetas[latest]);
+        return timestamps[latest];
+    }
+
+    /**
+     * Retrieves a pose at the given timestamp.  If no pose is available at the requested timestamp, interpolation is
+     * performed between the two timestamps nearest to the one requested.
+     * @param timestamp The timestamp to obtain a pose at
+     * @return An Optional object which potentially contains the located pose, or is empty if no pose could be computed.
+     */
+    public Optional<Pose2d> get(double timestamp) {
+        if (!get(timestamp, scratch)) {
+            return Optional.empty();
+        }
+        return Optional.of(scratch.toPose2d());
+    }
+
+    /**
+     * Retrieves a pose at the given timestamp, writing it into a caller owned pose.  This does not allocate.
+     * @param timestamp The timestamp to obtain a pose at
+     * @param out The pose to write the located pose into.  This is not modified if no pose could be computed.
+     * @return True if a pose was computed, or false if the history is empty
+     */
+    public boolean get(double timestamp, MutablePose2d out) {
+        if (ring.size() == 0) {
+            return false;
+        }
+
+        int upper = ring.lowerBound(timestamps, timestamp);
+
+        //If attempting interpolation at ends of history, return the nearest data point
+        if (upper == ring.size()) {
+            int latest = ring.latest();
+            out.set(xs[latest], ys[latest], thetas[latest]);
+            return true;
+        }
+        int top = ring.physicalIndex(upper);
+        if (upper == 0 || timestamps[top] == timestamp) {
+            out.set(xs[top], ys[top], thetas[top]);
+            return true;
+        }
+
+        //Interpolate between the stored poses rather than re-applying the twist, since a measurement may have corrected
+        //the top one
+        int bottom = ring.physicalIndex(upper - 1);
+        double t = (timestamp - timestamps[bottom]) / (timestamps[top] - timestamps[bottom]);
+        GeomUtil.interpolate(xs[bottom], ys[bottom], thetas[bottom], xs[top], ys[top], thetas[top], t, out);
+        return true;
+    }
+}
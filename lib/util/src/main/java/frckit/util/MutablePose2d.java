@@ -0,0 +1,105 @@
+package frckit.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * A mutable pose (x, y, and heading in radians) stored as primitive values.  This is intended to be owned by the caller
+ * and passed as an output to methods which produce a pose, so that hot code paths can avoid allocating a new Pose2d
+ * every loop cycle.
+ */
+public class MutablePose2d {
+    private double x;
+    private double y;
+    private double theta;
+
+    /**
+     * Creates a new MutablePose2d at the origin (x=0, y=0, theta=0)
+     */
+    public MutablePose2d() {
+    }
+
+    /**
+     * Creates a new MutablePose2d
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param theta The heading, in radians
+     */
+    public MutablePose2d(double x, double y, double theta) {
+        set(x, y, theta);
+    }
+
+    /**
+     * Creates a new MutablePose2d with the same value as a Pose2d
+     * @param pose The pose to copy
+     */
+    public MutablePose2d(Pose2d pose) {
+        set(pose);
+    }
+
+    /**
+     * @return The x coordinate
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return The y coordinate
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return The heading, in radians
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * Sets the value of this pose
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param theta The heading, in radians
+     * @return This object, for chaining
+     */
+    public MutablePose2d set(double x, double y, double theta) {
+        this.x = x;
+        this.y = y;
+        this.theta = theta;
+        return this;
+    }
+
+    /**
+     * Sets the value of this pose from a Pose2d
+     * @param pose The pose to copy
+     * @return This object, for chaining
+     */
+    public MutablePose2d set(Pose2d pose) {
+        return set(pose.getX(), pose.getY(), pose.getRotation().getRadians());
+    }
+
+    /**
+     * Sets the value of this pose from another MutablePose2d
+     * @param pose The pose to copy
+     * @return This object, for chaining
+     */
+    public MutablePose2d set(MutablePose2d pose) {
+        return set(pose.x, pose.y, pose.theta);
+    }
+
+    /**
+     * Creates a new (immutable) Pose2d with the current value of this pose.  Note that this allocates.
+     * @return The equivalent Pose2d
+     */
+    public Pose2d toPose2d() {
+        return new Pose2d(x, y, new Rotation2d(theta));
+    }
+
+    @Override
+    public String toString() {
+        return "MutablePose2d(" + x + ", " + y + ", " + theta + ")";
+    }
+}
@@ -1,66 +1,27 @@
 package frckit.util;
 
 import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
 
-import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.TreeMap;
 
 /**
  * Stores a history of timestamped Pose2d objects.
+ *
+ * Samples are stored in parallel primitive arrays (timestamp, x, y, theta) which are kept sorted by timestamp and used
+ * as a ring buffer, so inserting at the head and evicting the oldest sample are O(1) and do not allocate.  Lookups use
+ * a binary search over the timestamps.  Samples are expected to be inserted in increasing timestamp order (as they
+ * would be from an odometry loop), but out of order samples are still accepted and sorted into place.
  */
 public class PoseHistory {
-    //Inner class handling interpolation of double values
-    private static class InterpolatingTimestamp implements Comparable<InterpolatingTimestamp> {
-        public double value;
-
-        public InterpolatingTimestamp(double value) {
-            this.value = value;
-        }
-
-        public InterpolatingTimestamp interpolate(InterpolatingTimestamp other, double x) {
-            double dydx = other.value - value;
-            double searchY = dydx * x + value;
-            return new InterpolatingTimestamp(searchY);
-        }
-
-        public double inverseInterpolate(InterpolatingTimestamp upper, InterpolatingTimestamp query) {
-            double upper_to_lower = upper.value - value;
-            if (upper_to_lower <= 0) {
-                return 0;
-            }
-            double query_to_lower = query.value - value;
-            if (query_to_lower <= 0) {
-                return 0;
-            }
-            return query_to_lower / upper_to_lower;
-        }
-
-        @Override
-        public int compareTo(InterpolatingTimestamp other) {
-            return Double.compare(value, other.value);
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            InterpolatingTimestamp that = (InterpolatingTimestamp) o;
-            return Double.compare(that.value, value) == 0;
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(value);
-        }
-    }
+    //Initial size of the arrays used by an unbounded history.  These grow as needed.
+    private static final int INITIAL_UNBOUNDED_CAPACITY = 64;
 
     public static class TimestampedPose2d {
-        private final InterpolatingTimestamp timestamp;
+        private final double timestamp;
         private final Pose2d pose;
 
-        private TimestampedPose2d(InterpolatingTimestamp timestamp, Pose2d pose) {
+        TimestampedPose2d(double timestamp, Pose2d pose) {
             this.timestamp = timestamp;
             this.pose = pose;
         }
@@ -69,7 +30,7 @@ public class PoseHistory {
          * @return The timestamp that the pose was recorded, in seconds
          */
         public double getTimestamp() {
-            return timestamp.value;
+            return timestamp;
         }
 
         /**
@@ -81,7 +42,17 @@ public class PoseHistory {
     }
 
     private final int capacity;
-    private final TreeMap<InterpolatingTimestamp, Pose2d> map = new TreeMap<>();
+
+    private double[] timestamps;
+    private double[] xs;
+    private double[] ys;
+    private double[] thetas;
+
+    private final RingIndex ring;
+    //Copies a sample when the ring shifts samples to make room for an out of order insert
+    private final RingIndex.SampleMover mover;
+
+    private final MutablePose2d scratch = new MutablePose2d();
 
     /**
      * Creates a new PoseHistory with the given capacity.  When the history is at capacity, the oldest poses are removed
@@ -90,6 +61,10 @@ public class PoseHistory {
      */
     public PoseHistory(int capacity) {
         this.capacity = capacity;
+        int length = capacity > 0 ? capacity : INITIAL_UNBOUNDED_CAPACITY;
+        allocate(length);
+        ring = new RingIndex(length);
+        mover = (from, to) -> write(to, timestamps[from], xs[from], ys[from], thetas[from]);
     }
 
     /**
@@ -100,11 +75,18 @@ public class PoseHistory {
         this(0);
     }
 
+    private void allocate(int length) {
+        timestamps = new double[length];
+        xs = new double[length];
+        ys = new double[length];
+        thetas = new double[length];
+    }
+
     /**
      * Resets the pose history, deleting all entries.
      */
     public void reset() {
-        map.clear();
+        ring.clear();
     }
 
     /**
@@ -113,12 +95,32 @@ public class PoseHistory {
      * @param pose The pose
      */
     public void insert(double timestamp, Pose2d pose) {
-        while (capacity > 0 && map.size() >= capacity) {
-            //Remove elements since the tree is oversize
-            map.remove(map.firstKey());
+        insert(timestamp, pose.getX(), pose.getY(), pose.getRotation().getRadians());
+    }
+
+    /**
+     * Inserts a new timestamped pose into the history.  This does not allocate unless the history is unbounded and
+     * needs to grow.
+     * @param timestamp The timestamp, in seconds
+     * @param x The x coordinate of the pose
+     * @param y The y coordinate of the pose
+     * @param theta The heading of the pose, in radians
+     */
+    public void insert(double timestamp, double x, double y, double theta) {
+        int index = ring.insertionIndex(timestamps, timestamp);
+        if (index < 0) {
+            //Replace the existing sample at this timestamp
+            write(ring.physicalIndex(-index - 1), timestamp, x, y, theta);
+            return;
+        }
+
+        if (ring.isFull() && capacity <= 0) {
+            grow();
         }
 
-        map.put(new InterpolatingTimestamp(timestamp), pose);
+        //Evicts the oldest sample if the history is full, and shifts any newer samples forwards to make room (only
+        //happens for out of order inserts)
+        write(ring.insert(index, mover), timestamp, x, y, theta);
     }
 
     /**
@@ -126,11 +128,11 @@ public class PoseHistory {
      * @return An object containing the timestamp and the pose
      */
     public Optional<TimestampedPose2d> getLatest() {
-        Map.Entry<InterpolatingTimestamp, Pose2d> entry = map.lastEntry();
-        if (entry == null) {
+        if (ring.size() == 0) {
             return Optional.empty();
         }
-        return Optional.of(new TimestampedPose2d(entry.getKey(), entry.getValue()));
+        int latest = ring.latest();
+        return Optional.of(new TimestampedPose2d(timestamps[latest], poseAt(latest)));
     }
 
     /**
@@ -140,26 +142,149 @@ public class PoseHistory {
      * @return An Optional object which potentially contains the located pose, or is empty if no pose could be computed.
      */
     public Optional<Pose2d> get(double timestamp) {
-        InterpolatingTimestamp key = new InterpolatingTimestamp(timestamp);
-        Pose2d retrieved = map.get(key);
+        if (!get(timestamp, scratch)) {
+            return Optional.empty();
+        }
+        return Optional.of(scratch.toPose2d());
+    }
+
+    /**
+     * Retrieves a pose at the given timestamp, writing it into a caller owned pose.  This behaves the same as
+     * {@link #get(double)}, but does not allocate.
+     * @param timestamp The timestamp to obtain a pose at
+     * @param out The pose to write the located pose into.  This is not modified if no pose could be computed.
+     * @return True if a pose was computed, or false if the history is empty
+     */
+    public boolean get(double timestamp, MutablePose2d out) {
+        if (ring.size() == 0) {
+            return false;
+        }
 
-        if (retrieved != null) return Optional.of(retrieved); //We have a pose at the exact timestamp, return it
+        resolve(ring.lowerBound(timestamps, timestamp), timestamp, out);
+        return true;
+    }
+
+    /**
+     * Retrieves a pose at the given timestamp, writing it into a caller owned array as {x, y, theta}.  This behaves the
+     * same as {@link #get(double)}, but does not allocate.
+     * @param timestamp The timestamp to obtain a pose at
+     * @param out The array to write the located pose into, which must have a length of at least 3.  This is not
+     *            modified if no pose could be computed.
+     * @return True if a pose was computed, or false if the history is empty
+     */
+    public boolean get(double timestamp, double[] out) {
+        if (!get(timestamp, scratch)) {
+            return false;
+        }
+        out[0] = scratch.getX();
+        out[1] = scratch.getY();
+        out[2] = scratch.getTheta();
+        return true;
+    }
 
-        InterpolatingTimestamp topBound = map.ceilingKey(key);
-        InterpolatingTimestamp bottomBound = map.floorKey(key);
+    /**
+     * Retrieves poses at many timestamps at once, writing them into caller owned arrays.  This produces the same results
+     * as calling {@link #get(double)} for each timestamp, but does not allocate.  The timestamps may be in any order,
+     * however when they are sorted in ascending order all of them are located in a single merge-style pass over the
+     * history (O(n + m) rather than O(m log n)).  Out of order timestamps fall back to a binary search.
+     * @param queryTimestamps The timestamps to obtain poses at
+     * @param xOut The array to write the x coordinate of each located pose into
+     * @param yOut The array to write the y coordinate of each located pose into
+     * @param thetaOut The array to write the heading (in radians) of each located pose into
+     * @return True if the poses were computed, or false if the history is empty
+     */
+    public boolean get(double[] queryTimestamps, double[] xOut, double[] yOut, double[] thetaOut) {
+        return get(queryTimestamps, queryTimestamps.length, xOut, yOut, thetaOut);
+    }
 
-        //If attempting interpolation at ends of tree, return the nearest data point
-        if (topBound == null && bottomBound == null) {
-            return Optional.empty();
-        } else if (topBound == null) {
-            return Optional.of(map.get(bottomBound));
-        } else if (bottomBound == null) {
-            return Optional.of(map.get(topBound));
+    /**
+     * Retrieves poses at the first "count" timestamps of an array, writing them into caller owned arrays.  This is
+     * useful when the arrays are preallocated and reused with a varying number of queries.
+     * @param queryTimestamps The timestamps to obtain poses at
+     * @param count The number of timestamps to look up
+     * @param xOut The array to write the x coordinate of each located pose into
+     * @param yOut The array to write the y coordinate of each located pose into
+     * @param thetaOut The array to write the heading (in radians) of each located pose into
+     * @return True if the poses were computed, or false if the history is empty
+     * @see #get(double[], double[], double[], double[])
+     */
+    public boolean get(double[] queryTimestamps, int count, double[] xOut, double[] yOut, double[] thetaOut) {
+        int size = ring.size();
+        if (size == 0) {
+            return false;
+        }
+
+        int upper = 0;
+        for (int i = 0; i < count; i++) {
+            double timestamp = queryTimestamps[i];
+            if (i == 0 || timestamp < queryTimestamps[i - 1]) {
+                //First query, or the queries went backwards, so search from scratch
+                upper = ring.lowerBound(timestamps, timestamp);
+            } else {
+                //Continue walking forwards from the previous query
+                while (upper < size && timestamps[ring.physicalIndex(upper)] < timestamp) {
+                    upper++;
+                }
+            }
+            resolve(upper, timestamp, scratch);
+            xOut[i] = scratch.getX();
+            yOut[i] = scratch.getY();
+            thetaOut[i] = scratch.getTheta();
+        }
+        return true;
+    }
+
+    //Computes the pose at a timestamp given the (logical) index of the first sample at or after it, as found by
+    //lowerBound.  The history must not be empty.
+    private void resolve(int upper, double timestamp, MutablePose2d out) {
+        //If attempting interpolation at ends of history, return the nearest data point
+        if (upper == ring.size()) {
+            int latest = ring.latest();
+            out.set(xs[latest], ys[latest], thetas[latest]);
+            return;
+        }
+        int top = ring.physicalIndex(upper);
+        if (upper == 0 || timestamps[top] == timestamp) {
+            //Either we have a pose at the exact timestamp, or the timestamp is before the oldest pose
+            out.set(xs[top], ys[top], thetas[top]);
+            return;
         }
 
         //Get surrounding values for interpolation
-        Pose2d topElem = map.get(topBound);
-        Pose2d bottomElem = map.get(bottomBound);
-        return Optional.of(GeomUtil.interpolate(bottomElem, topElem, bottomBound.inverseInterpolate(topBound, key)));
+        int bottom = ring.physicalIndex(upper - 1);
+        double t = (timestamp - timestamps[bottom]) / (timestamps[top] - timestamps[bottom]);
+        GeomUtil.interpolate(xs[bottom], ys[bottom], thetas[bottom], xs[top], ys[top], thetas[top], t, out);
+    }
+
+    private void write(int physical, double timestamp, double x, double y, double theta) {
+        timestamps[physical] = timestamp;
+        xs[physical] = x;
+        ys[physical] = y;
+        thetas[physical] = theta;
+    }
+
+    private Pose2d poseAt(int physical) {
+        return new Pose2d(xs[physical], ys[physical], new Rotation2d(thetas[physical]));
+    }
+
+    //Doubles the size of the storage arrays, unrolling the ring so the oldest sample is at index zero
+    private void grow() {
+        double[] oldTimestamps = timestamps;
+        double[] oldXs = xs;
+        double[] oldYs = ys;
+        double[] oldThetas = thetas;
+        int oldHead = ring.head();
+        allocate(oldTimestamps.length * 2);
+
+        int firstPart = oldTimestamps.length - oldHead;
+        System.arraycopy(oldTimestamps, oldHead, timestamps, 0, firstPart);
+        System.arraycopy(oldXs, oldHead, xs, 0, firstPart);
+        System.arraycopy(oldYs, oldHead, ys, 0, firstPart);
+        System.arraycopy(oldThetas, oldHead, thetas, 0, firstPart);
+        System.arraycopy(oldTimestamps, 0, timestamps, firstPart, oldHead);
+        System.arraycopy(oldXs, 0, xs, firstPart, oldHead);
+        System.arraycopy(oldYs, 0, ys, firstPart, oldHead);
+        System.arraycopy(oldThetas, 0, thetas, firstPart, oldHead);
+        ring.unrolled(timestamps.length);
     }
 }
@@ -0,0 +1,337 @@
+package frckit.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A persistent journal of timestamped poses, stored as fixed width binary records in a memory mapped file.  This is
+ * intended for recording every odometry pose at full rate during a match for later analysis, without the overhead of
+ * formatting text or performing blocking IO on the main loop.
+ *
+ * Appending a pose only copies four doubles into the mapped file (the operating system writes the pages out in the
+ * background), so it performs no system calls and does not allocate.  It can still stall if touching the mapped page
+ * causes a page fault (for example, the first write to each page, or a page the operating system has evicted), so it
+ * is cheap on average rather than strictly non-blocking.  The file is sized up front to hold a fixed number of records.
+ * For example, a 2.5 minute match at 250Hz is 37,500 records, or about 1.2MB.  Once the journal is full, further poses
+ * are dropped.
+ *
+ * A file can hold multiple sessions (for example, one per match).  Opening an existing journal continues appending
+ * after the records already in it, and {@link #beginSession()} marks the start of a new session.  Journals are read
+ * back with {@link #read(Path)}.
+ *
+ * File format (all values little endian):
+ * <pre>
+ * Header (32 bytes):  int magic, int version, long capacity (records), long count (records written), long reserved
+ * Record (32 bytes):  double timestamp, double x, double y, double theta
+ * </pre>
+ * A record with a NaN timestamp marks the start of a session, and its x field holds the wall clock time the session
+ * started at, in milliseconds since the epoch.
+ */
+public class PoseJournal implements AutoCloseable {
+    private static final int MAGIC = 0x464b504a; //"FKPJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int RECORD_BYTES = 32;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 16;
+
+    /**
+     * A session (for example, a single match) read back from a journal.
+     */
+    public static class Session {
+        private final double startTimeMillis;
+        private final double[] timestamps;
+        private final double[] xs;
+        private final double[] ys;
+        private final double[] thetas;
+
+        private Session(double startTimeMillis, double[] timestamps, double[] xs, double[] ys, double[] thetas) {
+            this.startTimeMillis = startTimeMillis;
+            this.timestamps = timestamps;
+            this.xs = xs;
+            this.ys = ys;
+            this.thetas = thetas;
+        }
+
+        /**
+         * @return The wall clock time the session started at, in milliseconds since the epoch, or NaN if the records
+         *         were written without a call to beginSession
+         */
+        public double getStartTimeMillis() {
+            return startTimeMillis;
+        }
+
+        /**
+         * @return The number of poses in the session
+         */
+        public int size() {
+            return timestamps.length;
+        }
+
+        /**
+         * @return The timestamps of the poses, in seconds
+         */
+        public double[] getTimestamps() {
+            return timestamps;
+        }
+
+        /**
+         * @return The x coordinates of the poses
+         */
+        public double[] getXs() {
+            return xs;
+        }
+
+        /**
+         * @return The y coordinates of the poses
+         */
+        public double[] getYs() {
+            return ys;
+        }
+
+        /**
+         * @return The headings of the poses, in radians
+         */
+        public double[] getThetas() {
+            return thetas;
+        }
+
+        /**
+         * Inserts every pose in the session into a PoseHistory
+         * @param history The history to insert the poses into
+         */
+        public void insertInto(PoseHistory history) {
+            for (int i = 0; i < timestamps.length; i++) {
+                history.insert(timestamps[i], xs[i], ys[i], thetas[i]);
+            }
+        }
+
+        /**
+         * Creates a PoseHistory containing every pose in the session
+         * @return The resulting history
+         */
+        public PoseHistory toPoseHistory() {
+            PoseHistory history = new PoseHistory(Math.max(1, timestamps.length));
+            insertInto(history);
+            return history;
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long capacity;
+    private long count;
+
+    private PoseJournal(FileChannel channel, MappedByteBuffer buffer, long capacity, long count) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.count = count;
+    }
+
+    /**
+     * Opens a journal for writing, creating it if it does not exist.  If the file already contains a journal, new
+     * records are appended after the existing ones, and the existing journal's capacity is used.
+     * @param path The path of the journal file
+     * @param capacity The number of records the journal can hold, if it is being created
+     * @return The opened journal
+     * @throws IOException If the file could not be opened or mapped, or contains something other than a journal
+     */
+    public static PoseJournal open(Path path, long capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long existingSize = channel.size();
+            if (existingSize >= HEADER_BYTES) {
+                MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, HEADER_BYTES);
+                checkHeader(header, path);
+                capacity = header.getLong(CAPACITY_OFFSET);
+            } else if (capacity <= 0) {
+                throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+            }
+
+            MappedByteBuffer buffer = map(channel, FileChannel.MapMode.READ_WRITE, fileSize(capacity));
+            long count;
+            if (existingSize >= HEADER_BYTES) {
+                count = Math.min(buffer.getLong(COUNT_OFFSET), capacity);
+            } else {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(CAPACITY_OFFSET, capacity);
+                buffer.putLong(COUNT_OFFSET, 0L);
+                count = 0L;
+            }
+            return new PoseJournal(channel, buffer, capacity, count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads every session from a journal file.
+     * @param path The path of the journal file
+     * @return The sessions in the journal, in the order they were written
+     * @throws IOException If the file could not be read, or contains something other than a journal
+     */
+    public static List<Session> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return Collections.emptyList();
+            }
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, HEADER_BYTES);
+            checkHeader(header, path);
+            long capacity = header.getLong(CAPACITY_OFFSET);
+            long count = Math.min(header.getLong(COUNT_OFFSET), capacity);
+            //Only read as many records as actually made it into the file
+            count = Math.min(count, (channel.size() - HEADER_BYTES) / RECORD_BYTES);
+            MappedByteBuffer buffer = map(channel, FileChannel.MapMode.READ_ONLY, HEADER_BYTES + count * RECORD_BYTES);
+
+            List<Session> sessions = new ArrayList<>();
+            long sessionStart = 0L;
+            double sessionStartTime = Double.NaN;
+            for (long i = 0; i <= count; i++) {
+                boolean marker = i < count && Double.isNaN(buffer.getDouble(recordOffset(i)));
+                if (i == count || marker) {
+                    //End the current session
+                    if (i > sessionStart || !Double.isNaN(sessionStartTime)) {
+                        sessions.add(readSession(buffer, sessionStart, i, sessionStartTime));
+                    }
+                    if (marker) {
+                        sessionStart = i + 1;
+                        sessionStartTime = buffer.getDouble(recordOffset(i) + 8);
+                    }
+                }
+            }
+            return sessions;
+        }
+    }
+
+    /**
+     * Marks the start of a new session (for example, a new match).  Poses appended after this call are returned as a
+     * separate session when the journal is read.
+     * @return True if the marker was written, or false if the journal is full
+     */
+    public boolean beginSession() {
+        return append(Double.NaN, System.currentTimeMillis(), 0.0, 0.0);
+    }
+
+    /**
+     * Appends a pose to the journal.
+     * @param timestamp The timestamp of the pose, in seconds
+     * @param pose The pose
+     * @return True if the pose was written, or false if the journal is full
+     */
+    public boolean append(double timestamp, Pose2d pose) {
+        return append(timestamp, pose.getX(), pose.getY(), pose.getRotation().getRadians());
+    }
+
+    /**
+     * Appends a pose to the journal.  This only copies the values into the mapped file, and does not allocate.
+     * @param timestamp The timestamp of the pose, in seconds
+     * @param x The x coordinate of the pose
+     * @param y The y coordinate of the pose
+     * @param theta The heading of the pose, in radians
+     * @return True if the pose was written, or false if the journal is full
+     */
+    public boolean append(double timestamp, double x, double y, double theta) {
+        if (count >= capacity) {
+            return false;
+        }
+        int offset = recordOffset(count);
+        buffer.putDouble(offset, timestamp);
+        buffer.putDouble(offset + 8, x);
+        buffer.putDouble(offset + 16, y);
+        buffer.putDouble(offset + 24, theta);
+        count++;
+        //The count is written after the record, so if the process dies the page cache never holds a count covering a
+        //partial record.  This ordering is not durable: the operating system may write the pages to the device in any
+        //order, so after a power loss the count can cover records which never reached the device unless flush() ran.
+        buffer.putLong(COUNT_OFFSET, count);
+        return true;
+    }
+
+    /**
+     * @return The number of records in the journal, including session markers
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * @return The number of records the journal can hold
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Forces all appended records to be written to the storage device.  This is the only point at which appended
+     * records are durable against power loss.  This blocks on IO, so it should not be called from the main loop.
+     */
+    public void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Flushes and closes the journal.
+     * @throws IOException If the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private static Session readSession(MappedByteBuffer buffer, long start, long end, double startTimeMillis) {
+        int length = (int) (end - start);
+        double[] timestamps = new double[length];
+        double[] xs = new double[length];
+        double[] ys = new double[length];
+        double[] thetas = new double[length];
+        for (int i = 0; i < length; i++) {
+            int offset = recordOffset(start + i);
+            timestamps[i] = buffer.getDouble(offset);
+            xs[i] = buffer.getDouble(offset + 8);
+            ys[i] = buffer.getDouble(offset + 16);
+            thetas[i] = buffer.getDouble(offset + 24);
+        }
+        return new Session(startTimeMillis, timestamps, xs, ys, thetas);
+    }
+
+    private static void checkHeader(MappedByteBuffer header, Path path) throws IOException {
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a pose journal: " + path);
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported pose journal version " + header.getInt(4) + ": " + path);
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(mode, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static long fileSize(long capacity) {
+        long size = HEADER_BYTES + capacity * RECORD_BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Capacity " + capacity + " is too large for a single mapped file");
+        }
+        return size;
+    }
+
+    private static int recordOffset(long index) {
+        return (int) (HEADER_BYTES + index * RECORD_BYTES);
+    }
+}
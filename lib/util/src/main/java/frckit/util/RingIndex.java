@@ -0,0 +1,195 @@
+package frckit.util;
+
+/**
+ * The index bookkeeping shared by the histories which store their samples in parallel primitive arrays, sorted by
+ * timestamp and used as a ring buffer.  This tracks which slots of the arrays hold samples (the physical index of the
+ * oldest sample, and the number of samples), and implements the logic every such history needs: converting a logical
+ * index (0 is the oldest sample) to a physical index into the arrays, binary searching the timestamps, appending, and
+ * making room for an out of order sample by evicting the oldest sample and shifting newer ones forwards.
+ *
+ * The histories own the arrays themselves.  When samples need to be shifted, the history is asked to move each one
+ * through a {@link SampleMover}, so it can copy whatever columns it stores.  None of the methods allocate.
+ *
+ * The static methods operate on an explicit head and size, for readers which work from a snapshot of them (see
+ * {@link ConcurrentPoseHistory}).
+ */
+final class RingIndex {
+    /**
+     * Copies the sample stored at one physical index to another
+     */
+    interface SampleMover {
+        void move(int from, int to);
+    }
+
+    private int capacity;
+    private int head = 0; //Physical index of the oldest sample
+    private int size = 0;
+
+    /**
+     * @param capacity The length of the storage arrays, which must be positive
+     */
+    RingIndex(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return The length of the storage arrays
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The physical index of the oldest sample
+     */
+    int head() {
+        return head;
+    }
+
+    /**
+     * @return The number of samples
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return True if every slot of the storage arrays holds a sample
+     */
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Deletes all samples
+     */
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Changes the length of the storage arrays, after the owner has copied the samples into new arrays with the oldest
+     * sample at index zero.
+     * @param capacity The new length of the storage arrays
+     */
+    void unrolled(int capacity) {
+        this.capacity = capacity;
+        head = 0;
+    }
+
+    /**
+     * @param index The logical index of a sample
+     * @return The physical index of the sample in the storage arrays
+     */
+    int physicalIndex(int index) {
+        return physicalIndex(head, index, capacity);
+    }
+
+    /**
+     * @return The physical index of the latest sample.  The history must not be empty.
+     */
+    int latest() {
+        return physicalIndex(size - 1);
+    }
+
+    /**
+     * @param timestamps The timestamp array of the history
+     * @param timestamp The timestamp to search for
+     * @return The logical index of the first sample with a timestamp greater than or equal to the given timestamp, or
+     *         size if there is no such sample
+     */
+    int lowerBound(double[] timestamps, double timestamp) {
+        return lowerBound(timestamps, head, size, capacity, timestamp);
+    }
+
+    /**
+     * Finds where a sample with the given timestamp belongs.  Samples newer than everything in the history (the common
+     * case) are found without searching.
+     * @param timestamps The timestamp array of the history
+     * @param timestamp The timestamp of the new sample
+     * @return The logical index to insert the sample at, or (-(index) - 1) if the sample at that logical index already
+     *         has the same timestamp
+     */
+    int insertionIndex(double[] timestamps, double timestamp) {
+        if (size == 0 || timestamp > timestamps[latest()]) {
+            return size;
+        }
+        int index = lowerBound(timestamps, timestamp);
+        return timestamps[physicalIndex(index)] == timestamp ? -index - 1 : index;
+    }
+
+    /**
+     * Adds a slot for a sample newer than every other sample, overwriting the oldest sample if the history is full.
+     * @return The physical index to write the new sample into
+     */
+    int append() {
+        int index;
+        if (size == capacity) {
+            index = head;
+            head = physicalIndex(1);
+        } else {
+            index = physicalIndex(size);
+            size++;
+        }
+        return index;
+    }
+
+    /**
+     * Adds a slot for a sample at a logical index, shifting the samples at and after it forwards.  If the history is
+     * full, the oldest sample is evicted first, which moves the slot back by one (a sample older than everything left
+     * takes the place of the evicted sample).
+     * @param index The logical index of the new sample, as found by insertionIndex
+     * @param mover Copies a sample between physical indices
+     * @return The physical index to write the new sample into
+     */
+    int insert(int index, SampleMover mover) {
+        if (size == capacity) {
+            head = physicalIndex(1);
+            size--;
+            index = Math.max(0, index - 1);
+        }
+        for (int i = size; i > index; i--) {
+            mover.move(physicalIndex(i - 1), physicalIndex(i));
+        }
+        size++;
+        return physicalIndex(index);
+    }
+
+    /**
+     * Converts an index relative to the oldest sample into an index into the storage arrays.  As long as start and
+     * index are both within [0, capacity], the result is within the arrays, even if they come from a stale snapshot.
+     * @param start The physical index of the oldest sample
+     * @param index The logical index of a sample
+     * @param capacity The length of the storage arrays
+     * @return The physical index of the sample
+     */
+    static int physicalIndex(int start, int index, int capacity) {
+        int physical = start + index;
+        return physical >= capacity ? physical - capacity : physical;
+    }
+
+    /**
+     * Binary searches a snapshot of a history for the first sample with a timestamp greater than or equal to the given
+     * timestamp.
+     * @param timestamps The timestamp array of the history
+     * @param start The physical index of the oldest sample
+     * @param count The number of samples
+     * @param capacity The length of the storage arrays
+     * @param timestamp The timestamp to search for
+     * @return The logical index of the sample, or count if there is no such sample
+     */
+    static int lowerBound(double[] timestamps, int start, int count, int capacity, double timestamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[physicalIndex(start, mid, capacity)] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
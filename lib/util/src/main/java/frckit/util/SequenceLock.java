@@ -0,0 +1,76 @@
+package frckit.util;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * A sequence lock ("seqlock"), which lets one writer thread publish a group of plain fields to any number of reader
+ * threads without locking.  The writer makes the sequence odd before modifying the fields, and even again once it is
+ * done.  Readers copy the fields they need into locals and then check that the sequence did not change while they
+ * were reading, retrying if it did.  The writer never blocks or waits for readers, readers never block each other, and
+ * nothing allocates.
+ *
+ * Only ONE thread may write.  The pattern for each side is:
+ * <pre>
+ * long seq = lock.beginWrite();
+ * //Modify the fields
+ * lock.endWrite(seq);
+ *
+ * while (true) {
+ *     long seq = lock.beginRead();
+ *     //Copy the fields into locals, without acting on them
+ *     if (lock.validateRead(seq)) {
+ *         //Use the copies
+ *     }
+ * }
+ * </pre>
+ * Since reads may see a write in progress before validating, readers must not act on the copies (for example, index an
+ * array with them) unless doing so is safe for any value the fields can hold.
+ *
+ * @see ConcurrentPoseHistory
+ */
+public final class SequenceLock {
+    private volatile long sequence = 0L;
+
+    /**
+     * Starts a write.  This must only be called from the writer thread.
+     * @return The sequence before the write, which must be passed to {@link #endWrite(long)}
+     */
+    public long beginWrite() {
+        long seq = sequence;
+        sequence = seq + 1; //Odd sequence, readers will retry
+        VarHandle.storeStoreFence(); //Make sure the odd sequence is visible before any of the data changes
+        return seq;
+    }
+
+    /**
+     * Finishes a write, publishing all of the changes made since {@link #beginWrite()}.
+     * @param seq The sequence returned by beginWrite
+     */
+    public void endWrite(long seq) {
+        sequence = seq + 2; //Even sequence, the volatile write publishes all data changes
+    }
+
+    /**
+     * Starts a read, spinning while a write is in progress.
+     * @return The sequence to pass to {@link #validateRead(long)}
+     */
+    public long beginRead() {
+        long seq = sequence;
+        while ((seq & 1L) != 0L) {
+            //A write is in progress
+            Thread.onSpinWait();
+            seq = sequence;
+        }
+        return seq;
+    }
+
+    /**
+     * Checks whether the values read since {@link #beginRead()} are consistent.
+     * @param seq The sequence returned by beginRead
+     * @return True if no write happened during the read, or false if the read must be retried
+     */
+    public boolean validateRead(long seq) {
+        VarHandle.loadLoadFence(); //Make sure all data reads complete before re-reading the sequence
+        return sequence == seq;
+    }
+}
@@ -6,6 +6,8 @@ import java.util.function.DoubleSupplier;
  * A DoubleSupplier which provides the same value until it is updated with a new value.
  * This is useful for applications where we only want to update a value once per loop cycle, and use the value
  * in many places.
+ *
+ * @see StoredSupplierGroup
  */
 public class StoredDoubleSupplier implements DoubleSupplier {
     private double value;
@@ -0,0 +1,279 @@
+package frckit.util;
+
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A group of StoredDoubleSuppliers which are all updated together in a single call to "update", which should be made
+ * once at the start of each loop cycle.  This replaces calling "update" on each supplier individually.
+ *
+ * The group also measures the time spent reading each source (in nanoseconds), so that slow sources (such as CAN or
+ * JNI reads) can be found.  The minimum, average, and maximum time is kept per source.  Expensive sources which do
+ * not need to be read every cycle can be registered with a period, in which case they are only updated every Nth cycle
+ * and keep their previous value in between.  Each such source's first read is offset by its registration index modulo
+ * its period, so that slow sources sharing a period are spread across cycles rather than all being read on the same
+ * cycle.
+ *
+ * Statistics are kept in primitive arrays which only grow when a source is registered, so updating the group does not
+ * allocate.  Sources should be registered during initialization.
+ */
+public class StoredSupplierGroup {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private StoredDoubleSupplier[] suppliers = new StoredDoubleSupplier[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] periods = new int[INITIAL_CAPACITY];
+    private int[] phases = new int[INITIAL_CAPACITY]; //The cycle (modulo the period) each source is updated on
+    private long[] lastNanos = new long[INITIAL_CAPACITY];
+    private long[] minNanos = new long[INITIAL_CAPACITY];
+    private long[] maxNanos = new long[INITIAL_CAPACITY];
+    private long[] totalNanos = new long[INITIAL_CAPACITY];
+    private long[] sampleCounts = new long[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private long cycle = 0;
+    private long lastUpdateNanos = 0;
+
+    /**
+     * Creates a new StoredDoubleSupplier which reads from the given source, and adds it to the group so that it is
+     * updated every cycle.
+     * @param name The name of the source, used to identify it in the statistics
+     * @param source The source to retrieve new values from
+     * @return The stored supplier, which provides the value read during the last update
+     */
+    public StoredDoubleSupplier add(String name, DoubleSupplier source) {
+        return add(name, source, 1);
+    }
+
+    /**
+     * Creates a new StoredDoubleSupplier which reads from the given source, and adds it to the group so that it is
+     * updated every Nth cycle.  The source is first updated on cycle (index % period), where index is the index the
+     * source is registered at, and the supplier provides 0 until then.
+     * @param name The name of the source, used to identify it in the statistics
+     * @param source The source to retrieve new values from
+     * @param period The number of cycles between updates of this source, which must be positive.  1 updates the source
+     *               every cycle.
+     * @return The stored supplier, which provides the value read during the last update
+     */
+    public StoredDoubleSupplier add(String name, DoubleSupplier source, int period) {
+        StoredDoubleSupplier supplier = new StoredDoubleSupplier(source);
+        add(name, supplier, period);
+        return supplier;
+    }
+
+    /**
+     * Adds an existing StoredDoubleSupplier to the group, so that it is updated every Nth cycle.  The supplier should
+     * not also be updated manually.  The source is first updated on cycle (index % period), and keeps its initial value
+     * until then.
+     * @param name The name of the source, used to identify it in the statistics
+     * @param supplier The supplier to update
+     * @param period The number of cycles between updates of this source, which must be positive.  1 updates the source
+     *               every cycle.
+     * @return The index of the source, which is used to retrieve its statistics
+     */
+    public int add(String name, StoredDoubleSupplier supplier, int period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive, got " + period);
+        }
+        if (size == suppliers.length) {
+            grow();
+        }
+        int index = size++;
+        suppliers[index] = supplier;
+        names[index] = name;
+        periods[index] = period;
+        phases[index] = index % period;
+        clearStatistics(index);
+        return index;
+    }
+
+    /**
+     * Updates every source which is due this cycle, measuring the time spent reading each one.  This should be called
+     * once at the start of each loop cycle.
+     */
+    public void update() {
+        long groupStart = System.nanoTime();
+        long start = groupStart;
+        for (int i = 0; i < size; i++) {
+            if (periods[i] != 1 && cycle % periods[i] != phases[i]) {
+                continue;
+            }
+            suppliers[i].update();
+            long end = System.nanoTime();
+            long elapsed = end - start;
+            start = end; //Reuse the end time as the next start time, to halve the calls to nanoTime
+
+            lastNanos[i] = elapsed;
+            if (elapsed < minNanos[i]) {
+                minNanos[i] = elapsed;
+            }
+            if (elapsed > maxNanos[i]) {
+                maxNanos[i] = elapsed;
+            }
+            totalNanos[i] += elapsed;
+            sampleCounts[i]++;
+        }
+        lastUpdateNanos = start - groupStart;
+        cycle++;
+    }
+
+    /**
+     * Resets the statistics of every source.  This does not change which cycles each source is updated on.
+     */
+    public void resetStatistics() {
+        for (int i = 0; i < size; i++) {
+            clearStatistics(i);
+        }
+        lastUpdateNanos = 0;
+    }
+
+    /**
+     * @return The number of sources in the group
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the index of a source by name.
+     * @param name The name of the source
+     * @return The index of the first source with the given name, or -1 if there is no such source
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index The index of the source
+     * @return The name of the source
+     */
+    public String getName(int index) {
+        checkIndex(index);
+        return names[index];
+    }
+
+    /**
+     * @param index The index of the source
+     * @return The number of cycles between updates of the source
+     */
+    public int getPeriod(int index) {
+        checkIndex(index);
+        return periods[index];
+    }
+
+    /**
+     * @param index The index of the source
+     * @return The cycle, modulo the period, that the source is updated on
+     */
+    public int getPhase(int index) {
+        checkIndex(index);
+        return phases[index];
+    }
+
+    /**
+     * @param index The index of the source
+     * @return The stored supplier for the source
+     */
+    public StoredDoubleSupplier getSupplier(int index) {
+        checkIndex(index);
+        return suppliers[index];
+    }
+
+    /**
+     * @param index The index of the source
+     * @return The number of times the source has been read since the statistics were last reset
+     */
+    public long getSampleCount(int index) {
+        checkIndex(index);
+        return sampleCounts[index];
+    }
+
+    /**
+     * @param index The index of the source
+     * @return The time spent in the most recent read of the source, in nanoseconds
+     */
+    public long getLastNanos(int index) {
+        checkIndex(index);
+        return lastNanos[index];
+    }
+
+    /**
+     * @param index The index of the source
+     * @return The shortest time spent reading the source, in nanoseconds, or 0 if it has not been read
+     */
+    public long getMinNanos(int index) {
+        checkIndex(index);
+        return sampleCounts[index] == 0 ? 0L : minNanos[index];
+    }
+
+    /**
+     * @param index The index of the source
+     * @return The average time spent reading the source, in nanoseconds, or 0 if it has not been read
+     */
+    public double getAverageNanos(int index) {
+        checkIndex(index);
+        return sampleCounts[index] == 0 ? 0.0 : (double) totalNanos[index] / sampleCounts[index];
+    }
+
+    /**
+     * @param index The index of the source
+     * @return The longest time spent reading the source, in nanoseconds
+     */
+    public long getMaxNanos(int index) {
+        checkIndex(index);
+        return maxNanos[index];
+    }
+
+    /**
+     * @return The total time spent in the most recent call to "update", in nanoseconds
+     */
+    public long getLastUpdateNanos() {
+        return lastUpdateNanos;
+    }
+
+    /**
+     * @return A table of the statistics of every source, with times in microseconds
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-32s %6s %10s %10s %10s%n", "Source", "Period", "Min (us)", "Avg (us)", "Max (us)"));
+        for (int i = 0; i < size; i++) {
+            builder.append(String.format("%-32s %6d %10.1f %10.1f %10.1f%n",
+                    names[i], periods[i], getMinNanos(i) / 1e3, getAverageNanos(i) / 1e3, maxNanos[i] / 1e3));
+        }
+        return builder.toString();
+    }
+
+    private void clearStatistics(int index) {
+        lastNanos[index] = 0L;
+        minNanos[index] = Long.MAX_VALUE;
+        maxNanos[index] = 0L;
+        totalNanos[index] = 0L;
+        sampleCounts[index] = 0L;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size + " sources");
+        }
+    }
+
+    private void grow() {
+        int capacity = suppliers.length * 2;
+        suppliers = Arrays.copyOf(suppliers, capacity);
+        names = Arrays.copyOf(names, capacity);
+        periods = Arrays.copyOf(periods, capacity);
+        phases = Arrays.copyOf(phases, capacity);
+        lastNanos = Arrays.copyOf(lastNanos, capacity);
+        minNanos = Arrays.copyOf(minNanos, capacity);
+        maxNanos = Arrays.copyOf(maxNanos, capacity);
+        totalNanos = Arrays.copyOf(totalNanos, capacity);
+        sampleCounts = Arrays.copyOf(sampleCounts, capacity);
+    }
+}
@@ -0,0 +1,283 @@
+package frckit.util.time;
+
+import edu.wpi.first.wpilibj.Timer;
+
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Runs non-critical work (such as telemetry publishing, log flushes, or trajectory pre-generation) only while there is
+ * time left in the current loop cycle, so that it is postponed rather than causing the loop to overrun.
+ *
+ * Tasks are registered once with a priority and an estimated cost, and are then scheduled to run with "schedule"
+ * (recurring tasks are always scheduled).  Calling "run" near the end of the loop runs scheduled tasks in priority
+ * order, skipping any task whose estimated cost does not fit in the time remaining before the deadline.  Skipped tasks
+ * are deferred, and stay scheduled for the next cycle.  The deadline is the start of the cycle (from the
+ * TimestampReference) plus a budget, and the time remaining is measured against it using System.nanoTime.
+ *
+ * The estimated cost of each task is updated with an exponential average of the time it actually takes to run.  To
+ * avoid starvation, a task which has been deferred too many cycles in a row is run regardless of the time remaining,
+ * and this is counted as a starvation.
+ *
+ * Running tasks does not allocate.  A queue should only be used from a single thread.
+ */
+public class DeferrableWorkQueue {
+    private static final double COST_SMOOTHING = 0.2; //Weight of the newest measurement in the estimated cost
+
+    private final TimestampReference timestampReference;
+    private final double budget;
+    private final DoubleSupplier clock;
+    private int maxDeferrals = 50;
+
+    private String[] names = new String[8];
+    private Runnable[] tasks = new Runnable[8];
+    private int[] priorities = new int[8];
+    private boolean[] recurring = new boolean[8];
+    private boolean[] scheduled = new boolean[8];
+    private double[] costNanos = new double[8];
+    private int[] consecutiveDeferrals = new int[8];
+    private long[] runCounts = new long[8];
+    private long[] deferralCounts = new long[8];
+    private long[] starvationCounts = new long[8];
+    private int[] order = new int[8]; //Task IDs, from highest to lowest priority
+    private int size = 0;
+
+    private long deferralCount = 0;
+    private long starvationCount = 0;
+
+    /**
+     * Creates a new DeferrableWorkQueue which uses the FPGA timestamp to measure the time remaining in the cycle.
+     * @param timestampReference The timestamp reference which marks the start of each loop cycle
+     * @param budget The time after the start of the cycle by which deferrable work should be finished, in seconds.  This
+     *               is normally a little less than the loop period.
+     */
+    public DeferrableWorkQueue(TimestampReference timestampReference, double budget) {
+        this(timestampReference, budget, Timer::getFPGATimestamp);
+    }
+
+    /**
+     * Creates a new DeferrableWorkQueue.
+     * @param timestampReference The timestamp reference which marks the start of each loop cycle
+     * @param budget The time after the start of the cycle by which deferrable work should be finished, in seconds.  This
+     *               is normally a little less than the loop period.
+     * @param clock Supplies the current time in seconds, on the same timebase as the timestamp reference
+     */
+    public DeferrableWorkQueue(TimestampReference timestampReference, double budget, DoubleSupplier clock) {
+        if (!(budget > 0.0)) {
+            throw new IllegalArgumentException("Budget must be positive, got " + budget);
+        }
+        this.timestampReference = timestampReference;
+        this.budget = budget;
+        this.clock = clock;
+    }
+
+    /**
+     * Sets how many cycles in a row a task may be deferred before it is run regardless of the time remaining.
+     * @param maxDeferrals The maximum number of consecutive deferrals, which must not be negative.  The default is 50.
+     */
+    public void setMaxDeferrals(int maxDeferrals) {
+        if (maxDeferrals < 0) {
+            throw new IllegalArgumentException("Max deferrals must not be negative, got " + maxDeferrals);
+        }
+        this.maxDeferrals = maxDeferrals;
+    }
+
+    /**
+     * Registers a task.  This should be done during initialization, as it may allocate.
+     * @param name The name of the task
+     * @param priority The priority of the task.  Higher priority tasks are run first.
+     * @param estimatedCost The initial estimate of how long the task takes to run, in seconds
+     * @param recurring True if the task should run every cycle (if there is time), or false if it only runs after each
+     *                  call to "schedule"
+     * @param task The task
+     * @return The ID of the task
+     */
+    public int register(String name, int priority, double estimatedCost, boolean recurring, Runnable task) {
+        if (estimatedCost < 0.0) {
+            throw new IllegalArgumentException("Estimated cost must not be negative, got " + estimatedCost);
+        }
+        if (size == names.length) {
+            grow();
+        }
+        int id = size++;
+        names[id] = name;
+        tasks[id] = task;
+        priorities[id] = priority;
+        this.recurring[id] = recurring;
+        scheduled[id] = recurring;
+        costNanos[id] = estimatedCost * 1e9;
+
+        //Insert into the priority order after any tasks of equal or higher priority
+        int position = id;
+        while (position > 0 && priorities[order[position - 1]] < priority) {
+            order[position] = order[position - 1];
+            position--;
+        }
+        order[position] = id;
+        return id;
+    }
+
+    /**
+     * Schedules a task to run in the next call to "run" which has time for it.  This has no effect if the task is
+     * already scheduled.
+     * @param id The ID of the task
+     */
+    public void schedule(int id) {
+        checkId(id);
+        scheduled[id] = true;
+    }
+
+    /**
+     * Cancels a scheduled task.  Recurring tasks are scheduled again in the next call to "run".
+     * @param id The ID of the task
+     */
+    public void cancel(int id) {
+        checkId(id);
+        scheduled[id] = false;
+        consecutiveDeferrals[id] = 0;
+    }
+
+    /**
+     * Runs scheduled tasks, in priority order, while there is time left before the deadline of the current cycle.
+     * Tasks which do not fit are deferred to the next cycle.  This should be called near the end of the loop, after
+     * all critical work.
+     * @return The number of tasks which were run
+     */
+    public int run() {
+        double remaining = timestampReference.getTimestamp() + budget - clock.getAsDouble();
+        long deadline = System.nanoTime() + (long) (remaining * 1e9);
+
+        int ran = 0;
+        for (int i = 0; i < size; i++) {
+            int id = order[i];
+            if (!scheduled[id]) {
+                if (!recurring[id]) {
+                    continue;
+                }
+                scheduled[id] = true;
+            }
+
+            long start = System.nanoTime();
+            boolean fits = start + (long) costNanos[id] <= deadline;
+            boolean starving = consecutiveDeferrals[id] >= maxDeferrals;
+            if (!fits && !starving) {
+                //Leave the task scheduled for the next cycle, but keep looking for cheaper tasks which do fit
+                consecutiveDeferrals[id]++;
+                deferralCounts[id]++;
+                deferralCount++;
+                continue;
+            }
+            if (!fits) {
+                starvationCounts[id]++;
+                starvationCount++;
+            }
+
+            scheduled[id] = recurring[id];
+            consecutiveDeferrals[id] = 0;
+            tasks[id].run();
+            long elapsed = System.nanoTime() - start;
+            costNanos[id] += (elapsed - costNanos[id]) * COST_SMOOTHING;
+            runCounts[id]++;
+            ran++;
+        }
+        return ran;
+    }
+
+    /**
+     * @return The number of registered tasks
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return The name of the task
+     */
+    public String getName(int id) {
+        checkId(id);
+        return names[id];
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return True if the task is waiting to run
+     */
+    public boolean isScheduled(int id) {
+        checkId(id);
+        return scheduled[id];
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return The current estimate of how long the task takes to run, in seconds
+     */
+    public double getEstimatedCost(int id) {
+        checkId(id);
+        return costNanos[id] / 1e9;
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return The number of times the task has run
+     */
+    public long getRunCount(int id) {
+        checkId(id);
+        return runCounts[id];
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return The number of times the task has been deferred to a later cycle
+     */
+    public long getDeferralCount(int id) {
+        checkId(id);
+        return deferralCounts[id];
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return The number of times the task was run without enough time remaining, because it had been deferred too
+     *         many cycles in a row
+     */
+    public long getStarvationCount(int id) {
+        checkId(id);
+        return starvationCounts[id];
+    }
+
+    /**
+     * @return The total number of times any task has been deferred to a later cycle
+     */
+    public long getDeferralCount() {
+        return deferralCount;
+    }
+
+    /**
+     * @return The total number of times any task was run without enough time remaining, because it had been deferred
+     *         too many cycles in a row
+     */
+    public long getStarvationCount() {
+        return starvationCount;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Task " + id + " out of bounds for " + size + " tasks");
+        }
+    }
+
+    private void grow() {
+        int capacity = size * 2;
+        names = Arrays.copyOf(names, capacity);
+        tasks = Arrays.copyOf(tasks, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        recurring = Arrays.copyOf(recurring, capacity);
+        scheduled = Arrays.copyOf(scheduled, capacity);
+        costNanos = Arrays.copyOf(costNanos, capacity);
+        consecutiveDeferrals = Arrays.copyOf(consecutiveDeferrals, capacity);
+        runCounts = Arrays.copyOf(runCounts, capacity);
+        deferralCounts = Arrays.copyOf(deferralCounts, capacity);
+        starvationCounts = Arrays.copyOf(starvationCounts, capacity);
+        order = Arrays.copyOf(order, capacity);
+    }
+}
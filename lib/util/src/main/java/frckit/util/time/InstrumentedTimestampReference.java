@@ -0,0 +1,62 @@
+package frckit.util.time;
+
+/**
+ * Timestamp reference which wraps another timestamp reference, and records the dt of every cycle into a
+ * LoopTimingHistogram.  This allows loop jitter and overruns to be tracked (and published to telemetry) without
+ * changing any code which consumes the timestamp.
+ *
+ * The first cycle (where the dt is zero) is not recorded.
+ *
+ * @see LoopTimingHistogram
+ */
+public class InstrumentedTimestampReference implements UpdatableTimestampReference {
+    private final UpdatableTimestampReference reference;
+    private final LoopTimingHistogram histogram;
+
+    /**
+     * Creates a new InstrumentedTimestampReference with a new histogram.
+     * @param reference The timestamp reference to wrap
+     * @param budget The longest a cycle may take before it is counted as an overrun, in seconds.  This is typically
+     *               the loop period.
+     */
+    public InstrumentedTimestampReference(UpdatableTimestampReference reference, double budget) {
+        this(reference, new LoopTimingHistogram(budget));
+    }
+
+    /**
+     * Creates a new InstrumentedTimestampReference which records into an existing histogram.
+     * @param reference The timestamp reference to wrap
+     * @param histogram The histogram to record the dt of every cycle into
+     */
+    public InstrumentedTimestampReference(UpdatableTimestampReference reference, LoopTimingHistogram histogram) {
+        this.reference = reference;
+        this.histogram = histogram;
+    }
+
+    /**
+     * @return The histogram the dt of every cycle is recorded into
+     */
+    public LoopTimingHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public double getTimestamp() {
+        return reference.getTimestamp();
+    }
+
+    @Override
+    public double getDt() {
+        return reference.getDt();
+    }
+
+    @Override
+    public void update() {
+        reference.update();
+        double dt = reference.getDt();
+        if (dt > 0.0) {
+            //Skip the first cycle, which has no dt
+            histogram.record(dt);
+        }
+    }
+}
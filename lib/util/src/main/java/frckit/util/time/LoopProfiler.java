@@ -0,0 +1,313 @@
+package frckit.util.time;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Measures how much of each loop cycle is spent in each section of the robot code (for example, each subsystem), to
+ * find out what is using up the loop budget.
+ *
+ * Sections are registered once (during initialization) to an integer ID, and each section is timed by calling
+ * "begin" and "end" with its ID around the code.  A section may be entered more than once per cycle, in which case
+ * the times are added together.  Cycles follow the TimestampReference: a new cycle is started automatically when a
+ * section begins after the timestamp has changed, or explicitly with "startCycle".  Calling "endCycle" at the end of
+ * the loop ends the cycle and checks it against the budget.
+ *
+ * The time spent in each section in each of the last N cycles is kept in preallocated arrays, which are used to
+ * compute a rolling average and maximum on demand.  Timing sections and ending cycles does not allocate.  The summary
+ * can be printed with "dump", and can optionally be printed automatically whenever a cycle overruns the budget (which
+ * does allocate, but only on an overrun).  A profiler should only be used from a single thread.
+ */
+public class LoopProfiler {
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final TimestampReference timestampReference;
+    private final long budgetNanos;
+    private final int window;
+
+    private String[] names = new String[8];
+    private long[] beginNanos = new long[8];
+    private long[] cycleNanos = new long[8]; //Time spent in each section in the current cycle
+    private long[][] historyNanos = new long[8][]; //Time spent in each section in each of the last N cycles
+    private int sections = 0;
+
+    private final long[] cycleHistoryNanos; //Total time of each of the last N cycles
+    private int historyIndex = 0; //Where the next cycle is written in the history arrays
+    private int historySize = 0;
+
+    private boolean cycleOpen = false;
+    private double cycleTimestamp;
+    private long cycleStartNanos;
+    private long lastEndNanos; //When the last section of the current cycle ended
+    private long cycleCount = 0;
+    private long overrunCount = 0;
+
+    private PrintStream overrunOutput = null;
+
+    /**
+     * Creates a new LoopProfiler.
+     * @param timestampReference The timestamp reference which marks the start of each loop cycle
+     * @param budget The longest a cycle may take before it is counted as an overrun, in seconds
+     * @param window The number of cycles to compute the rolling summary over, which must be positive
+     */
+    public LoopProfiler(TimestampReference timestampReference, double budget, int window) {
+        if (!(budget > 0.0)) {
+            throw new IllegalArgumentException("Budget must be positive, got " + budget);
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be positive, got " + window);
+        }
+        this.timestampReference = timestampReference;
+        this.budgetNanos = Math.round(budget * 1e9);
+        this.window = window;
+        this.cycleHistoryNanos = new long[window];
+    }
+
+    /**
+     * Registers a new section.  This should be done during initialization, as it may allocate.
+     * @param name The name of the section
+     * @return The ID of the section, which is passed to "begin" and "end"
+     */
+    public int register(String name) {
+        if (sections == names.length) {
+            int capacity = sections * 2;
+            names = Arrays.copyOf(names, capacity);
+            beginNanos = Arrays.copyOf(beginNanos, capacity);
+            cycleNanos = Arrays.copyOf(cycleNanos, capacity);
+            historyNanos = Arrays.copyOf(historyNanos, capacity);
+        }
+        int id = sections++;
+        names[id] = name;
+        beginNanos[id] = NOT_STARTED;
+        cycleNanos[id] = 0L;
+        historyNanos[id] = new long[window];
+        return id;
+    }
+
+    /**
+     * Sets a stream to print the summary to whenever a cycle overruns the budget.
+     * @param output The stream to print to, or null to disable printing on overruns
+     */
+    public void setOverrunOutput(PrintStream output) {
+        this.overrunOutput = output;
+    }
+
+    /**
+     * Starts a new cycle, ending the current one if it has not been ended.  This does not normally need to be called,
+     * as a new cycle is started automatically when the timestamp changes.  A cycle which is ended this way (rather than
+     * with "endCycle") is considered to have ended when its last section ended, so the time spent waiting for the next
+     * loop is not counted.
+     */
+    public void startCycle() {
+        if (cycleOpen) {
+            endCycle(lastEndNanos);
+        }
+        cycleOpen = true;
+        cycleTimestamp = timestampReference.getTimestamp();
+        cycleStartNanos = System.nanoTime();
+        lastEndNanos = cycleStartNanos;
+    }
+
+    /**
+     * Marks the start of a section.
+     * @param id The ID of the section
+     */
+    public void begin(int id) {
+        if (!cycleOpen || timestampReference.getTimestamp() != cycleTimestamp) {
+            startCycle();
+        }
+        beginNanos[id] = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a section, adding the time since the matching "begin" to the section's time for this cycle.
+     * This has no effect if the section was not started.
+     * @param id The ID of the section
+     */
+    public void end(int id) {
+        long start = beginNanos[id];
+        if (start == NOT_STARTED) {
+            return;
+        }
+        long now = System.nanoTime();
+        cycleNanos[id] += now - start;
+        beginNanos[id] = NOT_STARTED;
+        lastEndNanos = now;
+    }
+
+    /**
+     * Ends the current cycle, recording the time spent in each section into the rolling summary.  If the cycle took
+     * longer than the budget, it is counted as an overrun, and the summary is printed if an overrun output is set.
+     * @return True if the cycle overran the budget
+     */
+    public boolean endCycle() {
+        return endCycle(System.nanoTime());
+    }
+
+    private boolean endCycle(long endNanos) {
+        if (!cycleOpen) {
+            return false;
+        }
+        long elapsed = endNanos - cycleStartNanos;
+        cycleOpen = false;
+
+        cycleHistoryNanos[historyIndex] = elapsed;
+        for (int i = 0; i < sections; i++) {
+            historyNanos[i][historyIndex] = cycleNanos[i];
+            cycleNanos[i] = 0L;
+            beginNanos[i] = NOT_STARTED;
+        }
+        historyIndex = historyIndex + 1 == window ? 0 : historyIndex + 1;
+        historySize = Math.min(historySize + 1, window);
+        cycleCount++;
+
+        if (elapsed > budgetNanos) {
+            overrunCount++;
+            if (overrunOutput != null) {
+                overrunOutput.printf("Loop overrun at %.3fs: %.3fms (budget %.3fms)%n",
+                        cycleTimestamp, elapsed / 1e6, budgetNanos / 1e6);
+                dump(overrunOutput);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of sections registered
+     */
+    public int getSectionCount() {
+        return sections;
+    }
+
+    /**
+     * @param id The ID of the section
+     * @return The name of the section
+     */
+    public String getName(int id) {
+        checkId(id);
+        return names[id];
+    }
+
+    /**
+     * @return The number of cycles ended
+     */
+    public long getCycleCount() {
+        return cycleCount;
+    }
+
+    /**
+     * @return The number of cycles which overran the budget
+     */
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    /**
+     * @param id The ID of the section
+     * @return The time spent in the section in the most recently ended cycle, in nanoseconds
+     */
+    public long getLastNanos(int id) {
+        checkId(id);
+        return historySize == 0 ? 0L : historyNanos[id][lastIndex()];
+    }
+
+    /**
+     * @param id The ID of the section
+     * @return The average time spent in the section per cycle over the window, in nanoseconds
+     */
+    public double getAverageNanos(int id) {
+        checkId(id);
+        return average(historyNanos[id]);
+    }
+
+    /**
+     * @param id The ID of the section
+     * @return The longest time spent in the section in a single cycle over the window, in nanoseconds
+     */
+    public long getMaxNanos(int id) {
+        checkId(id);
+        return max(historyNanos[id]);
+    }
+
+    /**
+     * @return The time taken by the most recently ended cycle, in nanoseconds
+     */
+    public long getLastCycleNanos() {
+        return historySize == 0 ? 0L : cycleHistoryNanos[lastIndex()];
+    }
+
+    /**
+     * @return The average time taken by a cycle over the window, in nanoseconds
+     */
+    public double getAverageCycleNanos() {
+        return average(cycleHistoryNanos);
+    }
+
+    /**
+     * @return The longest time taken by a cycle over the window, in nanoseconds
+     */
+    public long getMaxCycleNanos() {
+        return max(cycleHistoryNanos);
+    }
+
+    /**
+     * Prints a summary of the time spent in each section over the window.
+     * @param output The stream to print to
+     */
+    public void dump(PrintStream output) {
+        output.printf("%-24s %10s %10s %10s%n", "Section", "Last (ms)", "Avg (ms)", "Max (ms)");
+        for (int i = 0; i < sections; i++) {
+            output.printf("%-24s %10.3f %10.3f %10.3f%n",
+                    names[i], getLastNanos(i) / 1e6, getAverageNanos(i) / 1e6, getMaxNanos(i) / 1e6);
+        }
+        output.printf("%-24s %10.3f %10.3f %10.3f%n", "(cycle)",
+                getLastCycleNanos() / 1e6, getAverageCycleNanos() / 1e6, getMaxCycleNanos() / 1e6);
+        output.printf("%d cycles, %d overruns (budget %.3fms)%n", cycleCount, overrunCount, budgetNanos / 1e6);
+    }
+
+    /**
+     * Clears the rolling summary and the cycle and overrun counts.
+     */
+    public void reset() {
+        historyIndex = 0;
+        historySize = 0;
+        cycleCount = 0;
+        overrunCount = 0;
+        cycleOpen = false;
+        for (int i = 0; i < sections; i++) {
+            cycleNanos[i] = 0L;
+            beginNanos[i] = NOT_STARTED;
+        }
+    }
+
+    //The history is written in order, so the filled entries are always the first historySize entries or all of them
+    private double average(long[] history) {
+        if (historySize == 0) {
+            return 0.0;
+        }
+        long total = 0;
+        for (int i = 0; i < historySize; i++) {
+            total += history[i];
+        }
+        return (double) total / historySize;
+    }
+
+    private long max(long[] history) {
+        long max = 0;
+        for (int i = 0; i < historySize; i++) {
+            max = Math.max(max, history[i]);
+        }
+        return max;
+    }
+
+    private int lastIndex() {
+        return historyIndex == 0 ? window - 1 : historyIndex - 1;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= sections) {
+            throw new IndexOutOfBoundsException("Section " + id + " out of bounds for " + sections + " sections");
+        }
+    }
+}
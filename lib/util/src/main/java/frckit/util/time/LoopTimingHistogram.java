@@ -0,0 +1,187 @@
+package frckit.util.time;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed memory histogram of loop cycle times, used to track loop jitter and overruns.
+ *
+ * Times are recorded with microsecond resolution into logarithmic buckets, with 8 buckets per power of two, so any
+ * percentile is reported within 12.5% of the true value (times under 8us are exact).  Times of up to about two hours
+ * can be recorded, and anything longer is counted in the last bucket.  The maximum is tracked exactly.  Any time longer
+ * than the budget (for example, the 20ms loop period) is counted as an overrun.
+ *
+ * Recording does not allocate, and all counters are atomic, so the statistics may be read from a different thread
+ * (such as a telemetry thread) than the one recording.  Statistics read while a time is being recorded may not yet
+ * include that time.  Only one thread should record at a time.
+ *
+ * @see InstrumentedTimestampReference
+ */
+public class LoopTimingHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 32; //Largest power of two (in microseconds) with its own buckets
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final double budget;
+    private final long budgetMicros;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Creates a new LoopTimingHistogram.
+     * @param budget The longest a cycle may take before it is counted as an overrun, in seconds
+     */
+    public LoopTimingHistogram(double budget) {
+        if (!(budget > 0.0)) {
+            throw new IllegalArgumentException("Budget must be positive, got " + budget);
+        }
+        this.budget = budget;
+        this.budgetMicros = toMicros(budget);
+    }
+
+    /**
+     * Records the time taken by a cycle.  This does not allocate.
+     * @param seconds The time taken, in seconds.  Negative times are recorded as zero.
+     */
+    public void record(double seconds) {
+        long micros = toMicros(seconds);
+        buckets.incrementAndGet(bucketIndex(micros));
+        totalMicros.addAndGet(micros);
+        if (micros > budgetMicros) {
+            overruns.incrementAndGet();
+        }
+        if (micros > maxMicros.get()) {
+            maxMicros.set(micros); //Only one thread records, so this does not need to be a compare and set
+        }
+        count.incrementAndGet(); //Incremented last, so a reader never sees more samples counted than in the buckets
+    }
+
+    /**
+     * Clears all recorded times.
+     */
+    public void reset() {
+        count.set(0L);
+        overruns.set(0L);
+        totalMicros.set(0L);
+        maxMicros.set(0L);
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0L);
+        }
+    }
+
+    /**
+     * @return The longest a cycle may take before it is counted as an overrun, in seconds
+     */
+    public double getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return The number of times recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return The number of times recorded which were longer than the budget
+     */
+    public long getOverrunCount() {
+        return overruns.get();
+    }
+
+    /**
+     * @return The longest time recorded, in seconds, or 0 if no times have been recorded
+     */
+    public double getMax() {
+        return maxMicros.get() / 1e6;
+    }
+
+    /**
+     * @return The average time recorded, in seconds, or 0 if no times have been recorded
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0.0 : totalMicros.get() / 1e6 / n;
+    }
+
+    /**
+     * @return The median time recorded, in seconds
+     */
+    public double getP50() {
+        return getPercentile(50.0);
+    }
+
+    /**
+     * @return The 99th percentile time recorded, in seconds
+     */
+    public double getP99() {
+        return getPercentile(99.0);
+    }
+
+    /**
+     * Computes a percentile of the times recorded.  The result is the upper edge of the bucket containing the
+     * percentile (but never more than the maximum), so it is never lower than the true value.  This does not allocate.
+     * @param percentile The percentile to compute, between 0 and 100
+     * @return The time at the given percentile, in seconds, or 0 if no times have been recorded
+     */
+    public double getPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100, got " + percentile);
+        }
+        long n = count.get();
+        if (n == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * n));
+        long max = maxMicros.get();
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                //The last bucket holds every time too long for the other buckets, so only the maximum is known
+                return i == BUCKETS - 1 ? max / 1e6 : Math.min(bucketUpperBound(i), max) / 1e6;
+            }
+        }
+        return max / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%.3fms p99=%.3fms max=%.3fms overruns=%d (budget %.3fms)",
+                getCount(), getP50() * 1e3, getP99() * 1e3, getMax() * 1e3, getOverrunCount(), budget * 1e3);
+    }
+
+    private static long toMicros(double seconds) {
+        return seconds > 0.0 ? Math.round(seconds * 1e6) : 0L;
+    }
+
+    //Values below SUB_BUCKETS get their own bucket.  Above that, each power of two is split into SUB_BUCKETS buckets,
+    //using the bits just below the most significant bit.
+    private static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    //The largest value (in microseconds) which falls into the given bucket
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
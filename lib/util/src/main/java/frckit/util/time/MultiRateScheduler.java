@@ -0,0 +1,336 @@
+package frckit.util.time;
+
+import edu.wpi.first.wpilibj.Timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Runs tasks at different rates relative to a base period (normally the main loop period).  For example, with a 20ms
+ * base period, odometry could run at 200Hz, control at 50Hz, and telemetry at 10Hz.
+ *
+ * Slow tasks run at an integer divisor of the base rate (every Nth base cycle), and are run from "run", which should be
+ * called once per main loop cycle.  Fast tasks run at an integer multiple of the base rate, and each runs on its own
+ * dedicated daemon thread (similar to a Notifier), which is started with "start".  Code in fast tasks runs
+ * concurrently with the main loop, so any data it shares with the rest of the robot code must be made thread safe (for
+ * example, with ConcurrentPoseHistory).
+ *
+ * Each task is passed its own TimestampReference, which is updated just before the task runs, so the timestamp and dt
+ * it sees are consistent with its own rate.  The time each task takes to run is measured.  A main loop task run which
+ * takes longer than the task's period is counted as a missed deadline.  Fast tasks are measured against their own
+ * schedule, so every period boundary which passes before a run finishes is counted as one missed deadline, whether the
+ * run was slow or started late.  Fast tasks which fall behind skip the runs they missed rather than running back to
+ * back to catch up.  Task statistics may be read from any thread.
+ *
+ * Tasks should be added during initialization.  Running tasks does not allocate.
+ */
+public class MultiRateScheduler {
+    /**
+     * A task which is run periodically by the scheduler.
+     */
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * Runs the task.
+         * @param timestamp The timestamp reference for this task, which has been updated for this run
+         */
+        void run(TimestampReference timestamp);
+    }
+
+    private static class TaskTimestampReference implements UpdatableTimestampReference {
+        private final DoubleSupplier clock;
+        private double timestamp;
+        private double dt;
+        private boolean started = false;
+
+        private TaskTimestampReference(DoubleSupplier clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public double getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public double getDt() {
+            return dt;
+        }
+
+        @Override
+        public void update() {
+            double now = clock.getAsDouble();
+            dt = started ? now - timestamp : 0.0;
+            started = true;
+            timestamp = now;
+        }
+    }
+
+    private static class ScheduledTask {
+        private final String name;
+        private final Task task;
+        private final int divisor; //Base cycles between runs, for slow tasks
+        private final long periodNanos;
+        private final TaskTimestampReference timestamp;
+
+        private final AtomicLong runCount = new AtomicLong();
+        private final AtomicLong missedCount = new AtomicLong();
+        private final AtomicLong lastNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        private ScheduledTask(String name, Task task, int divisor, long periodNanos, DoubleSupplier clock) {
+            this.name = name;
+            this.task = task;
+            this.divisor = divisor;
+            this.periodNanos = periodNanos;
+            this.timestamp = new TaskTimestampReference(clock);
+        }
+
+        //Runs the task once, recording its timing statistics.  Returns the time the task finished, from
+        //System.nanoTime.  Missed deadlines are counted by the caller, which knows the task's schedule.
+        private long execute() {
+            timestamp.update();
+            long start = System.nanoTime();
+            task.run(timestamp);
+            long end = System.nanoTime();
+            long elapsed = end - start;
+
+            lastNanos.set(elapsed);
+            totalNanos.addAndGet(elapsed);
+            if (elapsed > maxNanos.get()) {
+                maxNanos.set(elapsed); //Each task only runs on one thread, so this does not need to be a compare and set
+            }
+            runCount.incrementAndGet();
+            return end;
+        }
+    }
+
+    private final double basePeriod;
+    private final long basePeriodNanos;
+    private final DoubleSupplier clock;
+    private final List<ScheduledTask> tasks = new ArrayList<>();
+    private final List<ScheduledTask> slowTasks = new ArrayList<>();
+    private final List<ScheduledTask> fastTasks = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running = false;
+    private long cycle = 0;
+
+    /**
+     * Creates a new MultiRateScheduler which uses the FPGA timestamp for the task timestamps.
+     * @param basePeriod The base period, in seconds.  This is normally the main loop period.
+     */
+    public MultiRateScheduler(double basePeriod) {
+        this(basePeriod, Timer::getFPGATimestamp);
+    }
+
+    /**
+     * Creates a new MultiRateScheduler.
+     * @param basePeriod The base period, in seconds.  This is normally the main loop period.
+     * @param clock Supplies the current time in seconds, which is used for the task timestamps
+     */
+    public MultiRateScheduler(double basePeriod, DoubleSupplier clock) {
+        if (!(basePeriod > 0.0)) {
+            throw new IllegalArgumentException("Base period must be positive, got " + basePeriod);
+        }
+        this.basePeriod = basePeriod;
+        this.basePeriodNanos = Math.round(basePeriod * 1e9);
+        this.clock = clock;
+    }
+
+    /**
+     * Adds a task which runs from the main loop, once every Nth call to "run".
+     * @param name The name of the task
+     * @param divisor The number of base cycles between runs of the task, which must be positive.  1 runs the task at
+     *                the base rate.
+     * @param task The task
+     * @return The ID of the task, which is used to retrieve its statistics
+     */
+    public synchronized int addTask(String name, int divisor, Task task) {
+        if (divisor <= 0) {
+            throw new IllegalArgumentException("Divisor must be positive, got " + divisor);
+        }
+        ScheduledTask scheduled = new ScheduledTask(name, task, divisor, basePeriodNanos * divisor, clock);
+        slowTasks.add(scheduled);
+        tasks.add(scheduled);
+        return tasks.size() - 1;
+    }
+
+    /**
+     * Adds a task which runs on its own thread, N times per base period.  If the scheduler has already been started,
+     * the task's thread is started immediately.
+     * @param name The name of the task, which is also used to name its thread
+     * @param multiple The number of times to run the task per base period, which must be positive
+     * @param task The task
+     * @return The ID of the task, which is used to retrieve its statistics
+     */
+    public synchronized int addFastTask(String name, int multiple, Task task) {
+        if (multiple <= 0) {
+            throw new IllegalArgumentException("Multiple must be positive, got " + multiple);
+        }
+        ScheduledTask scheduled = new ScheduledTask(name, task, 1, basePeriodNanos / multiple, clock);
+        fastTasks.add(scheduled);
+        tasks.add(scheduled);
+        if (running) {
+            startThread(scheduled);
+        }
+        return tasks.size() - 1;
+    }
+
+    /**
+     * Runs every main loop task which is due this cycle.  This should be called once per main loop cycle.
+     */
+    public void run() {
+        for (int i = 0; i < slowTasks.size(); i++) {
+            ScheduledTask task = slowTasks.get(i);
+            if (cycle % task.divisor == 0) {
+                task.execute();
+                if (task.lastNanos.get() > task.periodNanos) {
+                    task.missedCount.incrementAndGet(); //Took longer than its period
+                }
+            }
+        }
+        cycle++;
+    }
+
+    /**
+     * Starts the threads which run the fast tasks.  This has no effect if the scheduler is already started.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (ScheduledTask task : fastTasks) {
+            startThread(task);
+        }
+    }
+
+    /**
+     * Stops the threads which run the fast tasks, waiting for any runs in progress to finish.
+     * @throws InterruptedException If interrupted while waiting for the threads to stop
+     */
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        for (Thread thread : threads) {
+            LockSupport.unpark(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        threads.clear();
+    }
+
+    /**
+     * @return The base period, in seconds
+     */
+    public double getBasePeriod() {
+        return basePeriod;
+    }
+
+    /**
+     * @return The number of tasks
+     */
+    public synchronized int getTaskCount() {
+        return tasks.size();
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return The name of the task
+     */
+    public String getName(int id) {
+        return getTask(id).name;
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return The period of the task, in seconds
+     */
+    public double getPeriod(int id) {
+        return getTask(id).periodNanos / 1e9;
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return The number of times the task has run
+     */
+    public long getRunCount(int id) {
+        return getTask(id).runCount.get();
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return The number of deadlines the task has missed, either by taking longer than its period to run or (for fast
+     *         tasks) by starting too late to run in its period
+     */
+    public long getMissedCount(int id) {
+        return getTask(id).missedCount.get();
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return The time the most recent run of the task took, in nanoseconds
+     */
+    public long getLastNanos(int id) {
+        return getTask(id).lastNanos.get();
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return The average time a run of the task takes, in nanoseconds
+     */
+    public double getAverageNanos(int id) {
+        ScheduledTask task = getTask(id);
+        long runs = task.runCount.get();
+        return runs == 0 ? 0.0 : (double) task.totalNanos.get() / runs;
+    }
+
+    /**
+     * @param id The ID of the task
+     * @return The longest time a run of the task has taken, in nanoseconds
+     */
+    public long getMaxNanos(int id) {
+        return getTask(id).maxNanos.get();
+    }
+
+    private synchronized ScheduledTask getTask(int id) {
+        return tasks.get(id);
+    }
+
+    private void startThread(ScheduledTask task) {
+        Thread thread = new Thread(() -> runFastTask(task), "MultiRateScheduler-" + task.name);
+        thread.setDaemon(true);
+        thread.start();
+        threads.add(thread);
+    }
+
+    private void runFastTask(ScheduledTask task) {
+        long next = System.nanoTime();
+        while (running) {
+            long now;
+            while ((now = System.nanoTime()) < next) {
+                LockSupport.parkNanos(next - now);
+                if (!running) {
+                    return;
+                }
+            }
+
+            long end = task.execute();
+            long deadline = next + task.periodNanos;
+            if (end > deadline) {
+                //Every period boundary before the end of the run is one missed deadline: this run's own, plus one for
+                //each run which could not start on time.  Those runs are skipped rather than run back to back, so the
+                //next run starts at the first boundary at or after the end of this one.
+                long missed = (end - next - 1) / task.periodNanos;
+                task.missedCount.addAndGet(missed);
+                next += (missed + 1) * task.periodNanos;
+            } else {
+                next = deadline;
+            }
+        }
+    }
+}
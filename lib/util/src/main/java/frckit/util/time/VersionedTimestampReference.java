@@ -0,0 +1,147 @@
+package frckit.util.time;
+
+import edu.wpi.first.wpilibj.Timer;
+import frckit.util.SequenceLock;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Timestamp reference which can be safely shared between threads.  Each call to "update" publishes the timestamp, dt,
+ * and cycle count together, so a thread other than the main loop (such as an odometry or vision thread) always sees a
+ * consistent set of values, and can stamp its data on the same timebase as the main loop.
+ *
+ * Values are published with a sequence lock, so reads never block the thread calling "update" and do not allocate.
+ * Use {@link #getSnapshot(Snapshot)} to read all three values together.  Only one thread may call "update".
+ */
+public class VersionedTimestampReference implements UpdatableTimestampReference {
+    /**
+     * A consistent copy of the timestamp, dt, and cycle count from a single update.  This is also a TimestampReference
+     * which does not change, so it can be passed to code which expects one.
+     */
+    public static class Snapshot implements TimestampReference {
+        private double timestamp;
+        private double dt;
+        private long cycleCount;
+
+        @Override
+        public double getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public double getDt() {
+            return dt;
+        }
+
+        /**
+         * @return The number of updates which had happened when the snapshot was taken
+         */
+        public long getCycleCount() {
+            return cycleCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot(timestamp=" + timestamp + ", dt=" + dt + ", cycleCount=" + cycleCount + ")";
+        }
+    }
+
+    private final DoubleSupplier clock;
+
+    //Guards the fields below, which are only written by the thread calling "update"
+    private final SequenceLock sequence = new SequenceLock();
+    private double timestamp;
+    private double dt;
+    private long cycleCount;
+
+    /**
+     * Creates a new VersionedTimestampReference which uses the RoboRIO FPGA (or simulated FPGA time).
+     */
+    public VersionedTimestampReference() {
+        this(Timer::getFPGATimestamp);
+    }
+
+    /**
+     * Creates a new VersionedTimestampReference.
+     * @param clock Supplies the current time, in seconds
+     */
+    public VersionedTimestampReference(DoubleSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void update() {
+        double now = clock.getAsDouble();
+        //Only this thread writes, so the current values can be read without the sequence
+        double newDt = cycleCount == 0 ? 0.0 : now - timestamp;
+
+        long seq = sequence.beginWrite();
+        timestamp = now;
+        dt = newDt;
+        cycleCount++;
+        sequence.endWrite(seq);
+    }
+
+    @Override
+    public double getTimestamp() {
+        while (true) {
+            long seq = sequence.beginRead();
+            double value = timestamp;
+            if (sequence.validateRead(seq)) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public double getDt() {
+        while (true) {
+            long seq = sequence.beginRead();
+            double value = dt;
+            if (sequence.validateRead(seq)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * @return The number of times "update" has been called
+     */
+    public long getCycleCount() {
+        while (true) {
+            long seq = sequence.beginRead();
+            long value = cycleCount;
+            if (sequence.validateRead(seq)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Reads the timestamp, dt, and cycle count from the same update into a snapshot.  This does not allocate.
+     * @param out The snapshot to write the values into
+     * @return The snapshot which was passed in
+     */
+    public Snapshot getSnapshot(Snapshot out) {
+        while (true) {
+            long seq = sequence.beginRead();
+            double snapshotTimestamp = timestamp;
+            double snapshotDt = dt;
+            long snapshotCycleCount = cycleCount;
+            if (sequence.validateRead(seq)) {
+                out.timestamp = snapshotTimestamp;
+                out.dt = snapshotDt;
+                out.cycleCount = snapshotCycleCount;
+                return out;
+            }
+        }
+    }
+
+    /**
+     * Reads the timestamp, dt, and cycle count from the same update into a new snapshot.
+     * @return The snapshot
+     */
+    public Snapshot getSnapshot() {
+        return getSnapshot(new Snapshot());
+    }
+}
@@ -0,0 +1,99 @@
+package frckit.util.time;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Timestamp reference which is driven by a virtual clock rather than the FPGA, and only advances when it is updated.
+ * This allows code which depends on a TimestampReference (such as trajectory followers and pose histories) to be run
+ * faster than real time in tests and offline simulations, with fully deterministic timestamps.
+ *
+ * Each call to "update" advances the clock by a dt, which is either fixed or supplied by a script (for example, to
+ * simulate loop jitter).  As with FPGATimestampReference, the dt is zero on the first update.
+ */
+public class VirtualTimestampReference implements UpdatableTimestampReference {
+    private final DoubleSupplier dtSource;
+    private final double startTimestamp;
+    private double timestamp;
+    private double dt;
+    private boolean started = false;
+
+    /**
+     * Creates a new VirtualTimestampReference which starts at zero and advances by a fixed dt.
+     * @param dt The time to advance by on each update, in seconds
+     */
+    public VirtualTimestampReference(double dt) {
+        this(0.0, dt);
+    }
+
+    /**
+     * Creates a new VirtualTimestampReference which advances by a fixed dt.
+     * @param startTimestamp The timestamp after the first update, in seconds
+     * @param dt The time to advance by on each update, in seconds
+     */
+    public VirtualTimestampReference(double startTimestamp, double dt) {
+        this(startTimestamp, fixedDt(dt));
+    }
+
+    /**
+     * Creates a new VirtualTimestampReference which advances by a scripted dt.
+     * @param startTimestamp The timestamp after the first update, in seconds
+     * @param dtSource Supplies the time to advance by on each update (after the first), in seconds.  This is called once
+     *                 per update, and must not return a negative value.
+     */
+    public VirtualTimestampReference(double startTimestamp, DoubleSupplier dtSource) {
+        this.startTimestamp = startTimestamp;
+        this.dtSource = dtSource;
+        this.timestamp = startTimestamp;
+    }
+
+    @Override
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public double getDt() {
+        return dt;
+    }
+
+    @Override
+    public void update() {
+        if (!started) {
+            //The timestamp has never been initialized, so the dt should be zero.
+            started = true;
+            dt = 0.0;
+            return;
+        }
+        advance(dtSource.getAsDouble());
+    }
+
+    /**
+     * Advances the clock by a specific amount, ignoring the fixed or scripted dt for this cycle.  This counts as an
+     * update, so "getTimestamp()" and "getDt()" return new values afterwards.
+     * @param dt The time to advance by, in seconds
+     */
+    public void advance(double dt) {
+        if (dt < 0.0) {
+            throw new IllegalArgumentException("Virtual clock cannot move backwards, got a dt of " + dt);
+        }
+        started = true;
+        this.dt = dt;
+        timestamp += dt;
+    }
+
+    /**
+     * Resets the clock back to its start timestamp, as if it had never been updated.
+     */
+    public void reset() {
+        timestamp = startTimestamp;
+        dt = 0.0;
+        started = false;
+    }
+
+    private static DoubleSupplier fixedDt(double dt) {
+        if (dt < 0.0) {
+            throw new IllegalArgumentException("dt must not be negative, got " + dt);
+        }
+        return () -> dt;
+    }
+}
@@ -0,0 +1,106 @@
+package frckit.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stress test for the seqlock in ConcurrentPoseHistory.  One writer inserts poses which follow a known formula of their
+ * index (x = k, y = 2k, theta = f(k)), while several readers look up poses.  A torn read (fields from two different
+ * samples) breaks the formula, so every pose read is checked against it.
+ */
+public class ConcurrentPoseHistoryTest {
+    private static final int CAPACITY = 16; //Small, so the writer is constantly overwriting the samples being read
+    private static final int SAMPLES = 1_000_000;
+    private static final int READERS = 3;
+    private static final double DT = 0.001;
+
+    //Neighbouring samples differ by at most 7 mrad, so interpolating between them stays close to the line y = 2x
+    private static double theta(long k) {
+        return (k % 8) * 1e-3;
+    }
+
+    @Test
+    public void readsAreNeverTorn() throws InterruptedException {
+        ConcurrentPoseHistory history = new ConcurrentPoseHistory(CAPACITY);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicLong reads = new AtomicLong();
+
+        Thread writer = new Thread(() -> {
+            for (long k = 0; k < SAMPLES; k++) {
+                history.insert(k * DT, k, 2.0 * k, theta(k));
+            }
+            writing.set(false);
+        });
+
+        Thread[] readers = new Thread[READERS];
+        for (int r = 0; r < READERS; r++) {
+            long seed = r;
+            readers[r] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                MutablePose2d pose = new MutablePose2d();
+                while (writing.get() && failure.get() == null) {
+                    double latest = history.getLatestTimestamp();
+                    if (Double.isNaN(latest)) {
+                        continue;
+                    }
+                    //Reach back past the oldest sample sometimes, so the clamped ends are read too
+                    long k = Math.round(latest / DT) - random.nextInt(CAPACITY + 4);
+
+                    //At a sample's timestamp (or clamped to an end), the result is exactly one sample
+                    if (history.get(k * DT, pose)) {
+                        long index = (long) pose.getX();
+                        if (pose.getX() != index || pose.getY() != 2.0 * index || pose.getTheta() != theta(index)) {
+                            failure.compareAndSet(null, "Torn sample read at k=" + k + ": " + pose);
+                        }
+                    }
+
+                    //Between two samples, the result lies between them, near the line y = 2x
+                    if (history.get((k + 0.5) * DT, pose)) {
+                        if (Math.abs(pose.getY() - 2.0 * pose.getX()) > 1e-2) {
+                            failure.compareAndSet(null, "Torn interpolation at k=" + k + ": " + pose);
+                        }
+                    }
+                    reads.incrementAndGet();
+                }
+            });
+        }
+
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        writer.start();
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals(null, failure.get());
+        assertTrue(reads.get() > 0, "Readers did not run while the writer was writing");
+    }
+
+    @Test
+    public void singleThreadedReadsMatchFormula() {
+        ConcurrentPoseHistory history = new ConcurrentPoseHistory(CAPACITY);
+        MutablePose2d pose = new MutablePose2d();
+        for (long k = 0; k < 100; k++) {
+            history.insert(k * DT, k, 2.0 * k, theta(k));
+        }
+        for (long k = 100 - CAPACITY; k < 100; k++) {
+            assertTrue(history.get(k * DT, pose));
+            assertEquals(k, pose.getX(), 0.0);
+            assertEquals(2.0 * k, pose.getY(), 0.0);
+            assertEquals(theta(k), pose.getTheta(), 0.0);
+        }
+        //Older than the oldest sample clamps to it
+        assertTrue(history.get(0.0, pose));
+        assertEquals(100 - CAPACITY, pose.getX(), 0.0);
+    }
+}
@@ -0,0 +1,141 @@
+package frckit.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the primitive pose kernels in GeomUtil match the object methods they replace, over random poses whose
+ * headings range well beyond [-pi, pi].
+ */
+public class GeomUtilTest {
+    private static final int SAMPLES = 10000;
+    private static final double TOLERANCE = 1e-9;
+    private static final double MAX_HEADING = 3.0 * Math.PI;
+
+    private final SplittableRandom random = new SplittableRandom(0);
+    private final MutablePose2d out = new MutablePose2d();
+
+    private Pose2d randomPose() {
+        return new Pose2d(
+                random.nextDouble(-10.0, 10.0),
+                random.nextDouble(-10.0, 10.0),
+                new Rotation2d(random.nextDouble(-MAX_HEADING, MAX_HEADING))
+        );
+    }
+
+    private static double radians(Pose2d pose) {
+        return pose.getRotation().getRadians();
+    }
+
+    //Headings are compared as angles, since the kernels and WPILib may wrap them differently
+    private static void assertAngleEquals(double expected, double actual, String message) {
+        assertEquals(0.0, Math.atan2(Math.sin(actual - expected), Math.cos(actual - expected)), TOLERANCE, message);
+    }
+
+    private void assertOutEquals(Pose2d expected, String message) {
+        assertEquals(expected.getX(), out.getX(), TOLERANCE, message);
+        assertEquals(expected.getY(), out.getY(), TOLERANCE, message);
+        assertAngleEquals(radians(expected), out.getTheta(), message);
+    }
+
+    @Test
+    public void composeMatchesTransformBy() {
+        for (int i = 0; i < SAMPLES; i++) {
+            Pose2d pose = randomPose();
+            Pose2d transform = randomPose();
+            Pose2d expected = pose.transformBy(new Transform2d(transform.getTranslation(), transform.getRotation()));
+            GeomUtil.compose(pose.getX(), pose.getY(), radians(pose),
+                    transform.getX(), transform.getY(), radians(transform), out);
+            assertOutEquals(expected, "compose " + pose + " by " + transform);
+        }
+    }
+
+    @Test
+    public void inverseMatchesPoseInverse() {
+        for (int i = 0; i < SAMPLES; i++) {
+            Pose2d pose = randomPose();
+            Pose2d expected = GeomUtil.poseInverse(pose);
+            GeomUtil.inverse(pose.getX(), pose.getY(), radians(pose), out);
+            //Both negate the heading without wrapping it, so they match exactly
+            assertEquals(expected.getX(), out.getX(), 0.0, "inverse " + pose);
+            assertEquals(expected.getY(), out.getY(), 0.0, "inverse " + pose);
+            assertEquals(radians(expected), out.getTheta(), 0.0, "inverse " + pose);
+        }
+    }
+
+    @Test
+    public void relativeToMatchesPose2d() {
+        for (int i = 0; i < SAMPLES; i++) {
+            Pose2d pose = randomPose();
+            Pose2d origin = randomPose();
+            Pose2d expected = pose.relativeTo(origin);
+            GeomUtil.relativeTo(pose.getX(), pose.getY(), radians(pose),
+                    origin.getX(), origin.getY(), radians(origin), out);
+            assertOutEquals(expected, pose + " relative to " + origin);
+        }
+    }
+
+    @Test
+    public void logMatchesPose2d() {
+        Twist2d twist = new Twist2d();
+        for (int i = 0; i < SAMPLES; i++) {
+            Pose2d start = randomPose();
+            Pose2d end = randomPose();
+            Twist2d expected = start.log(end);
+            GeomUtil.log(start.getX(), start.getY(), radians(start), end.getX(), end.getY(), radians(end), twist);
+            String message = "log from " + start + " to " + end;
+            assertEquals(expected.dx, twist.dx, TOLERANCE, message);
+            assertEquals(expected.dy, twist.dy, TOLERANCE, message);
+            assertAngleEquals(expected.dtheta, twist.dtheta, message);
+        }
+    }
+
+    @Test
+    public void expMatchesPose2d() {
+        for (int i = 0; i < SAMPLES; i++) {
+            Pose2d pose = randomPose();
+            //Include twists small enough to take the series expansion
+            double scale = i % 2 == 0 ? 1.0 : 1e-10;
+            Twist2d twist = new Twist2d(
+                    random.nextDouble(-5.0, 5.0), random.nextDouble(-5.0, 5.0),
+                    scale * random.nextDouble(-MAX_HEADING, MAX_HEADING)
+            );
+            Pose2d expected = pose.exp(twist);
+            GeomUtil.exp(pose.getX(), pose.getY(), radians(pose), twist.dx, twist.dy, twist.dtheta, out);
+            assertOutEquals(expected, "exp of " + pose);
+        }
+    }
+
+    @Test
+    public void interpolateMatchesPose2d() {
+        for (int i = 0; i < SAMPLES; i++) {
+            Pose2d lhs = randomPose();
+            Pose2d rhs = randomPose();
+            double t = random.nextDouble(-0.25, 1.25);
+            Pose2d expected = GeomUtil.interpolate(lhs, rhs, t);
+            GeomUtil.interpolate(lhs.getX(), lhs.getY(), radians(lhs), rhs.getX(), rhs.getY(), radians(rhs), t, out);
+            assertOutEquals(expected, "interpolate " + lhs + " to " + rhs + " at " + t);
+        }
+    }
+
+    @Test
+    public void unitConversionsMatchPose2d() {
+        for (int i = 0; i < SAMPLES; i++) {
+            Pose2d pose = randomPose();
+            GeomUtil.inchesToMeters(pose.getX(), pose.getY(), radians(pose), out);
+            assertOutEquals(GeomUtil.inchesToMeters(pose), "inches to meters " + pose);
+            assertEquals(radians(pose), out.getTheta(), 0.0);
+
+            GeomUtil.metersToInches(pose.getX(), pose.getY(), radians(pose), out);
+            assertOutEquals(GeomUtil.metersToInches(pose), "meters to inches " + pose);
+            assertEquals(radians(pose), out.getTheta(), 0.0);
+        }
+    }
+}